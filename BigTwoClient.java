@@ -1,21 +1,52 @@
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.swing.*;
 
 /**
- * Class responsible for establishing a connection to the Big Two game server and handling the communications with the game server
+ * Class responsible for establishing a connection to the Big Two game server and handling the communications with the game server.
+ * Connecting happens on the thread reading from the server, which reconnects after losing the connection and resumes the session
+ * so that the game goes on.
  * @author Darren Chang JR
  */
 public class BigTwoClient implements NetworkGame {
+	// milliseconds to wait for the server to accept a connection
+	private static final int CONNECT_TIMEOUT = 5000;
+	// milliseconds before the first retry, doubled after every failed attempt up to MAX_RETRY_DELAY
+	private static final int MIN_RETRY_DELAY = 250;
+	private static final int MAX_RETRY_DELAY = 8000;
+	// attempts to connect before giving up, about 25 s in all, which is within the time the server keeps the slot
+	private static final int MAX_ATTEMPTS = 8;
+	// heartbeat intervals advertised by the server without a message from it before the connection counts as lost; the
+	// server sends a heartbeat to a quiet client at least every two intervals
+	private static final int MAX_QUIET_INTERVALS = 3;
 	private BigTwo game;
 	private BigTwoGUI gui;
-	private Socket sock;
-	private ObjectOutputStream oos;
+	private volatile Socket sock;
+	// stream to the server, or null when not connected; guarded by this
+	private DataOutputStream dos;
+	// the thread reading from the server, or null if there is none; guarded by this
+	private Thread handlerThread;
+	// true once the local player leaves on purpose
+	private volatile boolean quitting = false;
+	// true from sending RESUME until the server answers, when nothing else may be sent
+	private volatile boolean resuming = false;
+	// the rest is only used by the thread reading from the server:
+	// the token of the session, or null if it cannot be resumed
+	private String sessionToken;
+	// the number of messages of the session received, which the server sends again from after a reconnection
+	private long numOfReceived;
+	// PLAYER_LIST and SESSION received for a new slot while resuming, used if the session has expired
+	private GameMessage newPlayerList, newSession;
 	private int playerID;
 	private String playerName;
 	private String serverIP = "127.0.0.1";
 	private int serverPort = 2396;
-	private ObjectInputStream ois;
+	private DataInputStream dis;
+	// decodes the cards of START messages into Big Two cards
+	private final MessageCodec codec = new MessageCodec() {
+		protected Deck createDeck() { return new BigTwoDeck(); }
+	};
 
 	/**
 	 * Creates a Big Two client
@@ -85,28 +116,105 @@ public class BigTwoClient implements NetworkGame {
 	public void setServerPort(int serverPort) { this.serverPort = serverPort; }
 
 	/**
-	 * Makes a network connection to the server.
+	 * Makes a network connection to the server without waiting for it. The thread reading from the server connects,
+	 * retrying with growing delays, and reconnects whenever the connection is lost.
 	 */
-	public void connect() {
-		if (sock != null)
+	public synchronized void connect() {
+		// already connected or connecting
+		if (handlerThread != null)
 			return;
-		try {
-			sock = new Socket(serverIP, serverPort);
-			oos = new ObjectOutputStream(sock.getOutputStream());
-			ois = new ObjectInputStream(sock.getInputStream());
-			Thread handlerThread = new Thread(new ServerHandler());
-			handlerThread.start();
-		} catch (Exception e) { e.printStackTrace(); }
+		quitting = false;
+		handlerThread = new Thread(new ServerHandler(), "BigTwoClient");
+		handlerThread.start();
+	}
+
+	/**
+	 * Tells the server that the local player leaves on purpose, so that its slot is not kept, and closes the connection.
+	 */
+	public void disconnect() {
+		sendMessage(new CardGameMessage(CardGameMessage.QUIT, -1, null));
+		quitting = true;
+		closeSocket();
+	}
+
+	/**
+	 * Connects to the server, waiting up to CONNECT_TIMEOUT for each attempt and retrying with exponential backoff.
+	 * Asks the server to resume the session if there is one.
+	 * @return true if connected, false after MAX_ATTEMPTS failed attempts
+	 */
+	private boolean open() throws InterruptedException {
+		int delay = MIN_RETRY_DELAY;
+		for (int attempt = 1; !quitting; attempt++) {
+			Socket s = new Socket();
+			try {
+				s.connect(new InetSocketAddress(serverIP, serverPort), CONNECT_TIMEOUT);
+				s.setTcpNoDelay(true);
+				// every message travels in a length-prefixed frame
+				dis = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+				synchronized (this) {
+					sock = s;
+					dos = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+					if (sessionToken != null) {
+						// the first message, answered after PLAYER_LIST and SESSION of a new slot;
+						// written under the same lock, so that nothing else is sent before it
+						resuming = true;
+						MessageFrame.write(dos, codec, new CardGameMessage(CardGameMessage.RESUME, -1,
+								new String[] { sessionToken, Long.toString(numOfReceived) }));
+					}
+				}
+				return true;
+			} catch (IOException e) {
+				closeSocket();
+				try { s.close(); } catch (IOException ex) {}
+				if (attempt == MAX_ATTEMPTS)
+					return false;
+				gui.printMsg("Cannot connect to the server, retrying in " + delay + " ms.\n");
+				// jitter keeps clients that lost the server together from retrying together
+				Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextInt(delay / 2 + 1));
+				delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+			}
+		}
+		return false;
 	}
 
 	/**
-	 * Parses the specified message received from the server.
+	 * Closes the connection to the server, if any.
+	 */
+	private synchronized void closeSocket() {
+		if (sock != null) {
+			try { sock.close(); } catch (IOException e) {}
+		}
+		sock = null;
+		dos = null;
+	}
+
+	/**
+	 * Parses the specified message received from the server. Called on the
+	 * thread reading from the server, which alone drives the game; the GUI
+	 * shows the changes on the event dispatch thread.
 	 * @param message the specified message received from the server
 	 */
-	public synchronized void parseMessage(GameMessage message){
+	public void parseMessage(GameMessage message){
+		switch (message.getType()) {
+			case CardGameMessage.PLAYER_LIST:
+			case CardGameMessage.FULL:
+			case CardGameMessage.SESSION:
+			case CardGameMessage.RESUME:
+			case CardGameMessage.HEARTBEAT:
+			case CardGameMessage.MSG:
+				// not numbered in the session
+				break;
+			default:
+				numOfReceived++;
+		}
 		switch (message.getType()) {
 			
 			case CardGameMessage.PLAYER_LIST:
+				if (resuming) {
+					// only needed if the session has expired
+					newPlayerList = message;
+					break;
+				}
 
 				playerID = message.getPlayerID();
 				game.getPlayerList().get(playerID).setName(playerName);
@@ -129,8 +237,49 @@ public class BigTwoClient implements NetworkGame {
 				break;
 
 			case CardGameMessage.FULL:
+				if (resuming) {
+					// the slot of the session is still kept, so the connection is retried
+					gui.printMsg("The server is full. Trying to resume the game again.\n");
+					break;
+				}
 				gui.printMsg("The server is full. Please try again later.\n");
-				sock = null;
+				// the server closes the connection, which is not retried
+				sessionToken = null;
+				break;
+
+			case CardGameMessage.SESSION:
+				String[] session = (String[]) message.getData();
+				setHeartbeatInterval(Integer.parseInt(session[1]));
+				if (resuming) {
+					newSession = message;
+				} else {
+					sessionToken = session[0];
+					numOfReceived = 0;
+				}
+				break;
+
+			case CardGameMessage.RESUME:
+				resuming = false;
+				GameMessage playerList = newPlayerList, newSlot = newSession;
+				newPlayerList = null;
+				newSession = null;
+				if (message.getPlayerID() >= 0 && message.getData() != null) {
+					// a snapshot of the table in place of the messages not received
+					gui.printMsg("Reconnected to the server.\n");
+					restore((CardGameSnapshot) message.getData());
+				} else if (message.getPlayerID() >= 0) {
+					// the messages not received follow
+					gui.printMsg("Reconnected to the server.\n");
+				} else {
+					gui.printMsg("The game could not be resumed. Joining the server again.\n");
+					sessionToken = null;
+					game.stop();
+					gui.disable();
+					if (playerList != null)
+						parseMessage(playerList);
+					if (newSlot != null)
+						parseMessage(newSlot);
+				}
 				break;
 
 			case CardGameMessage.QUIT:
@@ -151,32 +300,87 @@ public class BigTwoClient implements NetworkGame {
 				break;
 			
 			case CardGameMessage.START:
-				game.start((BigTwoDeck) message.getData());
+				// only the cards of the local player are sent
+				game.start(playerID, (CardList) message.getData(), message.getPlayerID());
 				gui.repaint();
 				break;
 
 			case CardGameMessage.MOVE:
-				game.checkMove(message.getPlayerID(), (int[]) message.getData());
+				// the server only broadcasts legal moves
+				game.applyMove(message.getPlayerID(), ((CardGameMove) message.getData()).getCards());
+				break;
+
+			case CardGameMessage.REJECT:
+				game.rejectMove();
 				break;
 
 			case CardGameMessage.MSG:
 				gui.appendChat((String) message.getData());
 				break;
+
+			case CardGameMessage.HEARTBEAT:
+				// tells the server the client is alive; RESUME has done so while resuming
+				if (!resuming)
+					sendMessage(new CardGameMessage(CardGameMessage.HEARTBEAT, -1, null));
+				break;
 		}
 	}
 
 	/**
-	 * Sends the specified message to the server.
+	 * Times out reading from the server after MAX_QUIET_INTERVALS heartbeat intervals without a message, or never if
+	 * the server sends no heartbeats
+	 * @param heartbeatInterval milliseconds between the heartbeats of the server, or 0 if it sends none
+	 */
+	private void setHeartbeatInterval(int heartbeatInterval) {
+		Socket s = sock;
+		try {
+			if (s != null)
+				s.setSoTimeout(heartbeatInterval * MAX_QUIET_INTERVALS);
+		} catch (SocketException e) {
+			// the connection is lost, which the reader notices
+		}
+	}
+
+	/**
+	 * Brings the game up to date with a snapshot of the table sent by the server on resuming
+	 * the session, and gets ready for the next game if this player missed the end of the last one.
+	 * @param snapshot snapshot of the table
+	 */
+	private void restore(CardGameSnapshot snapshot) {
+		numOfReceived = snapshot.getNumOfMessages();
+		for (int i = 0; i < game.getNumOfPlayers(); i++) {
+			if (playerID != i)
+				game.getPlayerList().get(i).setName((snapshot.getName(i) == null)? "" : snapshot.getName(i));
+		}
+		game.restore(playerID, snapshot);
+		if (!snapshot.isReady(playerID)) {
+			if (game.getCurrentPlayerIdx() == -1)
+				sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+			else if (game.endOfGame())
+				// shows the results, and sends READY once they are seen
+				game.showResults();
+		}
+	}
+
+	/**
+	 * Sends the specified message to the server. May be called on any thread,
+	 * and never waits for a message being parsed. Messages sent while not
+	 * connected, or while resuming the session, are lost.
 	 * @param message the specified message to be sent the server
 	 */
 	public synchronized void sendMessage(GameMessage message) {
+		if (dos == null || resuming) {
+			gui.printMsg("Not connected to the server.\n");
+			return;
+		}
 		try {
-			oos.writeObject(message);
+			MessageFrame.write(dos, codec, message);
 		} catch (Exception e) { e.printStackTrace(); }
 	}
 
 	/**
-	 * Inner class that implements run job for threading
+	 * Inner class that implements run job for threading: connects to the server, reads from it, and reconnects to
+	 * resume the session when the connection is lost
 	 * @author Darren Chang JR
 	 */
 	class ServerHandler implements Runnable {
@@ -184,10 +388,32 @@ public class BigTwoClient implements NetworkGame {
 		public void run() {
 			try {
 				while (true) {
-					GameMessage message = (GameMessage) ois.readObject();
-					parseMessage(message);
+					if (!open()) {
+						if (!quitting)
+							gui.printMsg("Cannot connect to the server.\n");
+						break;
+					}
+					try {
+						GameMessage message;
+						while ((message = MessageFrame.read(dis, codec)) != null) {
+							parseMessage(message);
+						}
+					} catch (IOException e) {
+						// the connection is lost, or nothing came for MAX_QUIET_INTERVALS heartbeat intervals
+					}
+					closeSocket();
+					if (quitting || sessionToken == null)
+						break;
+					resuming = false;
+					gui.printMsg("Lost the connection to the server. Reconnecting...\n");
 				}
 			} catch (Exception e) { e.printStackTrace(); }
+			finally {
+				closeSocket();
+				synchronized (BigTwoClient.this) {
+					handlerThread = null;
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,413 @@
+import java.util.ArrayList;
+
+/**
+ * Headless core of a Big Two card game. It holds the cards of every player (or
+ * only how many there are, for the players whose cards a client does not see)
+ * and the hands on the table, and validates and applies moves without creating
+ * any window or network connection. A CardGameUI can be plugged in to follow
+ * the game; without one the engine runs silently, so that servers, simulations
+ * and benchmarks can run it on a machine without a display.
+ * @author Darren Chang JR
+ */
+public class BigTwoEngine implements CardGame {
+    private int numOfPlayers;
+    private Deck deck;
+    private ArrayList<CardGamePlayer> playerList;
+    private ArrayList<Hand> handsOnTable;
+    private int currentPlayerIdx;
+    // number of moves made in the game so far, passes included
+    private int numOfMoves;
+    private CardGameUI ui;
+
+    /**
+     * Creates a Big Two card game with 4 players, no game in progress and no user interface
+     */
+    public BigTwoEngine() {
+        numOfPlayers = 4;
+        playerList = new ArrayList<CardGamePlayer>();
+        for (int i = 0; i < numOfPlayers; ++i) {
+            playerList.add(new CardGamePlayer());
+        }
+        handsOnTable = new ArrayList<Hand>();
+        currentPlayerIdx = -1;
+    }
+
+    /**
+     * Returns the number of players
+     * @return number of players
+     */
+    public int getNumOfPlayers() { return numOfPlayers; }
+
+    /**
+     * Returns the deck of cards being used
+     * @return deck of cards being used
+     */
+    public Deck getDeck() { return deck; }
+
+    /**
+     * Returns the list of players
+     * @return list of players
+     */
+    public ArrayList<CardGamePlayer> getPlayerList() { return playerList; }
+
+    /**
+     * Sets the list of players
+     * @param playerList list of players
+     */
+    public void setPlayerList(ArrayList<CardGamePlayer> playerList) { this.playerList = playerList; }
+
+    /**
+     * Returns the list of hands played on the table
+     * @return list of hands played on the table
+     */
+    public ArrayList<Hand> getHandsOnTable() { return handsOnTable; }
+
+    /**
+     * Returns the index of the current player, or -1 if no game is in progress
+     * @return index of the current player
+     */
+    public int getCurrentPlayerIdx() { return currentPlayerIdx; }
+
+    /**
+     * Sets the index of the current player
+     * @param currentPlayerIdx index of the current player
+     */
+    public void setCurrentPlayerIdx(int currentPlayerIdx) { this.currentPlayerIdx = currentPlayerIdx; }
+
+    /**
+     * Returns the number of moves made in the game so far, passes included, which is the
+     * sequence number of the next move
+     * @return number of moves made
+     */
+    public int getNumOfMoves() { return numOfMoves; }
+
+    /**
+     * Returns the user interface following this game
+     * @return user interface, or null if the game runs headless
+     */
+    public CardGameUI getUI() { return ui; }
+
+    /**
+     * Sets the user interface following this game
+     * @param ui user interface, or null to run headless
+     */
+    public void setUI(CardGameUI ui) { this.ui = ui; }
+
+    /**
+     * Starts/restarts the game with a given shuffled deck of cards
+     * @param deck shuffled deck of cards
+     */
+    public void start(Deck deck) {
+        this.deck = deck;
+        if (ui != null) ui.reset();
+        handsOnTable.clear();
+        numOfMoves = 0;
+
+        for (int i = 0; i < numOfPlayers; ++i) {
+            playerList.get(i).removeAllCards();
+            for (int j = 0; j < 13; ++j) {
+                // distribute card to player
+                Card currentCard = this.deck.getCard(i*13 + j);
+                playerList.get(i).addCard(currentCard);
+                // find the player with Three of Diamonds
+                if (currentCard.getRank() == 2 && currentCard.getSuit() == 0) {
+                    this.currentPlayerIdx = i;
+                }
+            }
+            playerList.get(i).sortCardsInHand();
+        }
+        if (ui != null) ui.promptActivePlayer();
+    }
+
+    /**
+     * Starts/restarts the game knowing only the cards dealt to one player, as a client does.
+     * Every other player is dealt as many hidden cards.
+     * @param playerIdx index of the player whose cards are known
+     * @param cards cards dealt to the player
+     * @param firstPlayerIdx index of the player who makes the first move
+     */
+    public void start(int playerIdx, CardList cards, int firstPlayerIdx) {
+        this.deck = null;
+        if (ui != null) ui.reset();
+        handsOnTable.clear();
+        numOfMoves = 0;
+
+        for (int i = 0; i < numOfPlayers; ++i) {
+            playerList.get(i).removeAllCards();
+            if (i == playerIdx) {
+                for (int j = 0; j < cards.size(); ++j) {
+                    playerList.get(i).addCard(cards.getCard(j));
+                }
+                playerList.get(i).sortCardsInHand();
+            } else {
+                playerList.get(i).addHiddenCards(cards.size());
+            }
+        }
+        this.currentPlayerIdx = firstPlayerIdx;
+        if (ui != null) ui.promptActivePlayer();
+    }
+
+    /**
+     * Restores the game from a snapshot of the server, e.g. one sent after reconnecting
+     * in place of the moves missed. Only the cards of one player are known; the others hold
+     * as many hidden cards as the snapshot tells.
+     * @param playerIdx index of the player whose cards are known
+     * @param snapshot snapshot of the game on the server
+     */
+    public void restore(int playerIdx, CardGameSnapshot snapshot) {
+        handsOnTable.clear();
+        for (int i = 0; i < numOfPlayers; ++i) {
+            CardGamePlayer player = playerList.get(i);
+            player.removeAllCards();
+            if (i == playerIdx) {
+                CardList hand = snapshot.getHand();
+                for (int j = 0; j < hand.size(); ++j) {
+                    player.addCard(hand.getCard(j));
+                }
+                player.sortCardsInHand();
+            } else {
+                player.addHiddenCards(snapshot.getNumOfCards(i));
+            }
+        }
+        // only the last hand on the table matters to the rules
+        if (snapshot.getLastHand() != null)
+            handsOnTable.add(composeHand(playerList.get(snapshot.getLastHandPlayerIdx()), snapshot.getLastHand()));
+        currentPlayerIdx = snapshot.getCurrentPlayerIdx();
+        numOfMoves = snapshot.getNumOfMoves();
+        if (ui != null) {
+            ui.repaint();
+            if (currentPlayerIdx >= 0 && !endOfGame())
+                ui.promptActivePlayer();
+            else
+                ui.disable();
+        }
+    }
+
+    /**
+     * Stops the game in progress, after which no move is accepted until the next start
+     */
+    public void stop() {
+        currentPlayerIdx = -1;
+    }
+
+    /**
+     * Makes a move by playerIdx using the cards cardIdx
+     * @param playerIdx index of player making the move
+     * @param cardIdx list of indices of cards
+     */
+    public void makeMove(int playerIdx, int[] cardIdx) {
+        checkMove(playerIdx, cardIdx);
+    }
+
+    /**
+     * Checks a move made by a player, applying it if it is legal and rejecting it otherwise
+     * @param playerIdx index of player making the move
+     * @param cardIdx list of indices of cards, or null to pass
+     */
+    public void checkMove(int playerIdx, int[] cardIdx) {
+        if (!tryMove(playerIdx, cardIdx))
+            rejectMove();
+    }
+
+    /**
+     * Checks a move made by a player and applies it if it is legal
+     * @param playerIdx index of player making the move
+     * @param cardIdx list of indices of cards, or null to pass
+     * @return true if the move is legal and has been applied false otherwise
+     */
+    public boolean tryMove(int playerIdx, int[] cardIdx) {
+        if (currentPlayerIdx < 0 || playerIdx != currentPlayerIdx || endOfGame())
+            return false;
+        return tryPlay(playerList.get(playerIdx), playerList.get(playerIdx).play(cardIdx));
+    }
+
+    /**
+     * Checks a move made by a player and applies it if it is legal
+     * @param playerIdx index of player making the move
+     * @param cards mask of the cards played in the layout of HandMask, or 0 to pass
+     * @return true if the move is legal and has been applied false otherwise
+     */
+    public boolean tryMove(int playerIdx, long cards) {
+        if (currentPlayerIdx < 0 || playerIdx != currentPlayerIdx || endOfGame())
+            return false;
+        CardGamePlayer currentPlayer = playerList.get(playerIdx);
+        // the cards must all be held by the player
+        if ((cards & ~HandMask.of(currentPlayer.getCardsInHand())) != 0)
+            return false;
+        return tryPlay(currentPlayer, (cards == 0) ? null : HandMask.toCardList(cards));
+    }
+
+    /**
+     * Checks the cards played by the current player and plays them if they are legal
+     * @param currentPlayer the current player
+     * @param cards cards played, or null to pass
+     * @return true if the move is legal and has been applied false otherwise
+     */
+    private boolean tryPlay(CardGamePlayer currentPlayer, CardList cards) {
+        Hand previousHand = getLastHand();
+
+        if (cards == null) {
+            // cannot pass when leading
+            if (previousHand == null || previousHand.getPlayer() == currentPlayer)
+                return false;
+            pass();
+            return true;
+        }
+
+        Hand hand = composeHand(currentPlayer, cards);
+        // hand is non-composable
+        // OR
+        // does not beat previous hand (if exists)
+        // OR
+        // is first hand but 3 Diamond is absent
+        if ((hand == null)
+            ||
+            (previousHand != null && !hand.beats(previousHand) && previousHand.getPlayer() != currentPlayer)
+            ||
+            (previousHand == null && !hand.contains(new Card(0, 2))))
+            return false;
+        play(hand);
+        return true;
+    }
+
+    /**
+     * Applies a move that is already known to be legal, e.g. one accepted by the server.
+     * The cards of another player need not be known.
+     * @param playerIdx index of player making the move
+     * @param cards mask of the cards played in the layout of HandMask, or 0 to pass
+     * @return hand played, or null if the player passed
+     */
+    public Hand applyMove(int playerIdx, long cards) {
+        CardGamePlayer currentPlayer = playerList.get(playerIdx);
+        currentPlayerIdx = playerIdx;
+        if (cards == 0) {
+            pass();
+            return null;
+        }
+        Hand hand = composeHand(currentPlayer, HandMask.toCardList(cards));
+        play(hand);
+        return hand;
+    }
+
+    /**
+     * Tells the user interface that a move of the current player is not legal
+     */
+    public void rejectMove() {
+        if (ui != null) {
+            ui.printMsg("Not a legal move!!!\n");
+            ui.repaint();
+            ui.promptActivePlayer();
+        }
+    }
+
+    /**
+     * Checks if a game ends
+     * @return boolean true if game ends
+     */
+    public boolean endOfGame() {
+        for (CardGamePlayer player : playerList) {
+            if (player.getNumOfCards() == 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the last hand played on the table
+     * @return last hand played, or null if the table is empty
+     */
+    public Hand getLastHand() {
+        return (handsOnTable.isEmpty() ? null : handsOnTable.get(handsOnTable.size() - 1));
+    }
+
+    /**
+     * Returns every hand a player can legally play on the table, not counting a pass
+     * @param playerIdx index of the player
+     * @return list of legal hands made of the player's cards
+     */
+    public ArrayList<Hand> getLegalMoves(int playerIdx) {
+        CardGamePlayer player = playerList.get(playerIdx);
+        Hand previousHand = getLastHand();
+        // the player leads if everyone else passed on their hand
+        if (previousHand != null && previousHand.getPlayer() == player)
+            previousHand = null;
+        // the first hand of a game must contain the Three of Diamonds
+        long required = (handsOnTable.isEmpty() ? HandMask.bit(new Card(0, 2)) : 0L);
+        return MoveGenerator.legalMoves(player, previousHand, required);
+    }
+
+    /**
+     * Returns a valid hand from the list of cards, null if no valid hand composable.
+     * The cards are classified once and only the matching hand is built.
+     * @param player player of the cards
+     * @param cards list of cards played
+     * @return valid hand from the list of cards, null if no valid hand composable
+     */
+    public static Hand composeHand(CardGamePlayer player, CardList cards) {
+        long mask = HandMask.of(cards);
+        // the same card listed twice is never a hand
+        if (HandMask.size(mask) != cards.size())
+            return null;
+
+        switch (HandMask.classify(mask)) {
+            case HandMask.STRAIGHT_FLUSH: return new StraightFlush(player, cards);
+            case HandMask.QUAD: return new Quad(player, cards);
+            case HandMask.FULL_HOUSE: return new FullHouse(player, cards);
+            case HandMask.FLUSH: return new Flush(player, cards);
+            case HandMask.STRAIGHT: return new Straight(player, cards);
+            case HandMask.TRIPLE: return new Triple(player, cards);
+            case HandMask.PAIR: return new Pair(player, cards);
+            case HandMask.SINGLE: return new Single(player, cards);
+            default: return null;
+        }
+    }
+
+    /**
+     * Returns the results of a finished game, one line per player
+     * @return results of the game
+     */
+    public String getResults() {
+        String message = "";
+        for (int i = 0; i < numOfPlayers; ++i) {
+            if (i == currentPlayerIdx)
+                message += String.format("%s wins the game.\n", playerList.get(i).getName());
+            else
+                message += String.format("%s has %d cards in hand.\n", playerList.get(i).getName(), playerList.get(i).getNumOfCards());
+        }
+        return message;
+    }
+
+    /**
+     * Shows the results of a finished game on the user interface
+     */
+    protected void showResults() {
+        if (ui != null) ui.printMsg(getResults());
+    }
+
+    private void pass() {
+        numOfMoves++;
+        if (ui != null) ui.printMsg("{Pass}\n");
+        nextPlayer();
+    }
+
+    private void play(Hand hand) {
+        numOfMoves++;
+        hand.getPlayer().removeCards(hand);
+        handsOnTable.add(hand);
+        if (ui != null) ui.printMsg(String.format("{%s} %s\n", hand.getType(), hand));
+        nextPlayer();
+    }
+
+    private void nextPlayer() {
+        if (endOfGame()) {
+            // the winner stays the current player once the game ends
+            showResults();
+            if (ui != null) ui.disable();
+        } else {
+            currentPlayerIdx = (currentPlayerIdx + 1) % numOfPlayers;
+            if (ui != null) {
+                ui.repaint();
+                ui.promptActivePlayer();
+            }
+        }
+    }
+}
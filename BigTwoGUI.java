@@ -11,9 +11,9 @@ public class BigTwoGUI implements CardGameUI {
 	private final static int MAX_CARD_NUM = 13;
     private BigTwo game = null;
     private boolean[] selected = new boolean[MAX_CARD_NUM];
-	private ArrayList<CardGamePlayer> playerList;
-	private ArrayList<Hand> handsOnTable;
-    private int activePlayer = -1;
+    private volatile int activePlayer = -1;
+	// the game as shown, only used on the event dispatch thread
+	private BigTwoView view;
 	// GUI related
     private JFrame frame;
     private BigTwoPanel bigTwoPanel;
@@ -28,8 +28,21 @@ public class BigTwoGUI implements CardGameUI {
 	private JScrollPane msgPane, chatPane;
 	private JPanel buttonsPanel, textPanel;
 	private static final int xLoc = 50, yLoc = 0, widthCard = 80, heightCard = 110, xSpace = 25, ySpace = 20;
+	// one icon of the card back shared by all the cards lying face down
+	private static final ImageIcon backIcon = new ImageIcon(CardImages.getBack());
 	private boolean globalEnable;
 	private BigTwoClient client;
+	// changes made by the thread driving the game and not yet shown by the
+	// event dispatch thread, guarded by pendingLock
+	private final Object pendingLock = new Object();
+	private BigTwoView pendingView = null;
+	private final StringBuilder pendingMsg = new StringBuilder();
+	private final StringBuilder pendingChat = new StringBuilder();
+	private boolean pendingClear = false;
+	private boolean pendingReset = false;
+	private boolean pendingEnable = false;
+	private String pendingDialog = null;
+	private boolean updateScheduled = false;
     
 	/**
 	 * constructor for creating a BigTwoGUI
@@ -37,8 +50,7 @@ public class BigTwoGUI implements CardGameUI {
 	 */
     public BigTwoGUI(BigTwo game) {
 		this.game = game;
-		this.playerList = game.getPlayerList();
-		this.handsOnTable = game.getHandsOnTable();
+		this.view = new BigTwoView(game);
 
 		client = new BigTwoClient(game, this);
 		
@@ -102,6 +114,13 @@ public class BigTwoGUI implements CardGameUI {
 		
 		frame = new JFrame("Les Chor Tai Ti");
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				// leaving on purpose frees the slot at once
+				client.disconnect();
+			}
+		});
 		frame.getContentPane().setBackground(new Color(22, 140, 38));
 		frame.setJMenuBar(menuBar);
 		frame.add(buttonsPanel, BorderLayout.SOUTH);
@@ -116,26 +135,28 @@ public class BigTwoGUI implements CardGameUI {
 	 * @param activePlayer an int value representing the index of the active player
 	 */
 	public void setActivePlayer(int activePlayer) {
-		if (activePlayer < 0 || activePlayer >= playerList.size()) {
+		if (activePlayer < 0 || activePlayer >= game.getNumOfPlayers()) {
 			this.activePlayer = -1;
 		} else {
 			this.activePlayer = activePlayer;
 		}
     }
 
+	/*
+	 * The methods of CardGameUI below are called by the thread driving the
+	 * game. They only record what has changed, and the event dispatch thread
+	 * shows everything recorded since its last update in one go.
+	 */
+
 	/**
-	 * Repaints the user interface.
+	 * Repaints the user interface with a snapshot of the game taken now. Only
+	 * the panels whose contents have changed since the last repaint are updated.
 	 */
 	public void repaint() {
-		playerList = game.getPlayerList();
-		handsOnTable = game.getHandsOnTable();
-		// if frame is null, then do nothing, else remove it and add a new one
-		if (frame != null) {
-			frame.remove(bigTwoPanel);
-			bigTwoPanel = new BigTwoPanel();
-			frame.add(bigTwoPanel, BorderLayout.CENTER);
-			frame.pack();
-			frame.repaint();
+		BigTwoView view = new BigTwoView(game);
+		synchronized (pendingLock) {
+			pendingView = view;
+			scheduleUpdate();
 		}
 	}
 
@@ -146,17 +167,21 @@ public class BigTwoGUI implements CardGameUI {
 	 *            interface
 	 */
 	public void printMsg(String msg) {
-		msgArea.append(msg);
-		msgArea.repaint();
-		msgArea.setCaretPosition(msgArea.getText().length());
+		synchronized (pendingLock) {
+			pendingMsg.append(msg);
+			scheduleUpdate();
+		}
 	}
 
 	/**
 	 * Clears the message area of the card game user interface.
 	 */
 	public void clearMsgArea() {
-		msgArea.setText("");
-		msgArea.repaint();
+		synchronized (pendingLock) {
+			pendingMsg.setLength(0);
+			pendingClear = true;
+			scheduleUpdate();
+		}
 	}
 
 	/**
@@ -166,9 +191,10 @@ public class BigTwoGUI implements CardGameUI {
 	 */
 	public void appendChat(String msg) {
 		if (msg.length() > 0) {
-			chatArea.append(msg);
-			chatArea.append("\n");
-			chatArea.repaint();
+			synchronized (pendingLock) {
+				pendingChat.append(msg).append("\n");
+				scheduleUpdate();
+			}
 		}
 	}
 
@@ -176,36 +202,40 @@ public class BigTwoGUI implements CardGameUI {
 	 * Resets the card game user interface.
 	 */
 	public void reset() {
-		for (int i = 0; i < MAX_CARD_NUM; i++) {
-			selected[i] = false;
+		synchronized (pendingLock) {
+			pendingReset = true;
+			pendingMsg.setLength(0);
+			pendingClear = true;
+			pendingEnable = true;
+			scheduleUpdate();
 		}
-		clearMsgArea();
-		enable();
 	}
 
 	/**
 	 * Enables user interactions.
 	 */
 	public void enable() {
-		globalEnable = true;
-		playButton.setEnabled(globalEnable);
-		passButton.setEnabled(globalEnable);
+		synchronized (pendingLock) {
+			pendingEnable = true;
+			scheduleUpdate();
+		}
 	}
 
 	/**
 	 * Disables user interactions.
 	 */
 	public void disable() {
-		globalEnable = false;
-		playButton.setEnabled(globalEnable);
-		passButton.setEnabled(globalEnable);
+		synchronized (pendingLock) {
+			pendingEnable = false;
+			scheduleUpdate();
+		}
 	}
 
 	/**
 	 * Prompts active player to select cards and make his/her move.
 	 */
 	public void promptActivePlayer() {
-		printMsg(playerList.get(game.getCurrentPlayerIdx()).getName() + "'s turn: ");
+		printMsg(game.getPlayerList().get(game.getCurrentPlayerIdx()).getName() + "'s turn: ");
 		if (activePlayer == game.getCurrentPlayerIdx()) {
 			enable();
 		} else {
@@ -221,9 +251,87 @@ public class BigTwoGUI implements CardGameUI {
 		return client;
 	}
 
+	/**
+	 * Shows the table as it ends and the results of the game in a dialog, and
+	 * gets ready for the next game once the dialog is closed.
+	 * @param msg the results of the game
+	 */
 	public void showMessageInDialog(String msg) {
-		JOptionPane.showMessageDialog(null, msg, "Game Ends", JOptionPane.PLAIN_MESSAGE);
-		client.sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+		BigTwoView view = new BigTwoView(game);
+		synchronized (pendingLock) {
+			pendingView = view;
+			pendingDialog = msg;
+			scheduleUpdate();
+		}
+	}
+
+	/**
+	 * Asks the event dispatch thread to show the pending changes, unless it
+	 * has been asked already. Called with pendingLock held.
+	 */
+	private void scheduleUpdate() {
+		if (updateScheduled) {
+			return;
+		}
+		updateScheduled = true;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				update();
+			}
+		});
+	}
+
+	/**
+	 * Shows every change recorded since the last update. Only called on the
+	 * event dispatch thread.
+	 */
+	void update() {
+		BigTwoView newView;
+		String msg, chat, dialog;
+		boolean clear, reset, enable;
+		synchronized (pendingLock) {
+			newView = pendingView;
+			msg = pendingMsg.toString();
+			chat = pendingChat.toString();
+			dialog = pendingDialog;
+			clear = pendingClear;
+			reset = pendingReset;
+			enable = pendingEnable;
+			pendingView = null;
+			pendingMsg.setLength(0);
+			pendingChat.setLength(0);
+			pendingDialog = null;
+			pendingClear = false;
+			pendingReset = false;
+			updateScheduled = false;
+		}
+		if (reset) {
+			resetSelected();
+		}
+		if (clear) {
+			msgArea.setText("");
+		}
+		if (msg.length() > 0) {
+			msgArea.append(msg);
+			msgArea.setCaretPosition(msgArea.getDocument().getLength());
+		}
+		if (chat.length() > 0) {
+			chatArea.append(chat);
+		}
+		globalEnable = enable;
+		playButton.setEnabled(globalEnable);
+		passButton.setEnabled(globalEnable);
+		// if frame is null, then do nothing, else update the panels in place
+		if (newView != null) {
+			view = newView;
+			if (frame != null) {
+				bigTwoPanel.refresh();
+			}
+		}
+		if (dialog != null) {
+			JOptionPane.showMessageDialog(null, dialog, "Game Ends", JOptionPane.PLAIN_MESSAGE);
+			client.sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+		}
 	}
 
 	/**
@@ -264,10 +372,18 @@ public class BigTwoGUI implements CardGameUI {
 	}
 
 	/**
-	 * Panel containing main gameplay area.
+	 * Panel containing main gameplay area. Its panels are kept between
+	 * repaints and only updated when their contents change.
 	 * @author Darren Chang JR
 	 */
     class BigTwoPanel extends JPanel {
+		private final PlayerPanel[] playerPanels;
+		private final JLabel noCardsLabel;
+		private final HandOnTablePanel handOnTablePanel;
+		// the hand shown on the table, or null if there is none, and who played it
+		private Card[] shownHand = null;
+		private String shownPlayer = null;
+
 		/**
 		 * BigTwoPanel constructor
 		 */
@@ -275,20 +391,56 @@ public class BigTwoGUI implements CardGameUI {
 			setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 			setBackground(new Color(0,0,0,0));
 			setPreferredSize(new Dimension(1000, 750));
-			for (int i = 0; i < game.getNumOfPlayers(); i++) {
-				PlayerPanel playerPanel =  new PlayerPanel(i, playerList.get(i).getCardsInHand());
-				playerPanel.setBackground(new Color(0,0,0,0));
-				add(playerPanel);
+			playerPanels = new PlayerPanel[view.getNumOfPlayers()];
+			for (int i = 0; i < playerPanels.length; i++) {
+				playerPanels[i] = new PlayerPanel(i);
+				playerPanels[i].setBackground(new Color(0,0,0,0));
+				add(playerPanels[i]);
 			}
-			if (!handsOnTable.isEmpty()) {
-				HandOnTablePanel handOnTablePanel = new HandOnTablePanel(handsOnTable.get(handsOnTable.size() - 1));
-				add(handOnTablePanel);
-			} else {
-				JLabel label = new JLabel("No cards on the table");
-				label.setFont(new Font("Arial", Font.BOLD, 20));
-				label.setPreferredSize(new Dimension(1000, 100));
-				add(label);
+			noCardsLabel = new JLabel("No cards on the table");
+			noCardsLabel.setFont(new Font("Arial", Font.BOLD, 20));
+			noCardsLabel.setPreferredSize(new Dimension(1000, 100));
+			add(noCardsLabel);
+			handOnTablePanel = new HandOnTablePanel();
+			refresh();
+		}
+
+		/**
+		 * Updates the panels of the players and the table whose contents
+		 * have changed
+		 */
+		public void refresh() {
+			for (int i = 0; i < playerPanels.length; i++) {
+				playerPanels[i].refresh(i);
+			}
+			// every view has its own arrays, so the cards are compared
+			Card[] hand = view.getLastHand();
+			String player = view.getLastHandPlayer();
+			if (Arrays.equals(hand, shownHand) && Objects.equals(player, shownPlayer)) {
+				return;
+			}
+			if (hand != null) {
+				handOnTablePanel.setHand(player, hand);
 			}
+			if ((hand == null) != (shownHand == null)) {
+				// swaps the label and the last hand, which needs a new layout
+				remove(hand == null ? handOnTablePanel : noCardsLabel);
+				add(hand == null ? noCardsLabel : handOnTablePanel);
+				revalidate();
+				repaint();
+			}
+			shownHand = hand;
+			shownPlayer = player;
+		}
+
+		/**
+		 * Keeps layout changes inside this panel, whose size does not
+		 * depend on its contents
+		 * @return true
+		 */
+		@Override
+		public boolean isValidateRoot() {
+			return true;
 		}
 	}
 	/**
@@ -296,21 +448,41 @@ public class BigTwoGUI implements CardGameUI {
 	 * @author Darren Chang JR
 	 */
 	class HandOnTablePanel extends JPanel {
+		private final JLabel nameText;
+		private final CardsLying lastHand;
 		/**
 		 * HandOnTablePanel constructor
-		 * @param handOnTable the hand on the table
 		 */
-		public HandOnTablePanel(Hand hand) {
+		public HandOnTablePanel() {
 			// decor
 			setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
 			setBackground(new Color(0,0,0,0));
 			setBorder(new EmptyBorder(0, 40, 0, 0));
-			CardsLying lastHand = new CardsLying(true, hand, false);
-			JLabel nameText = new JLabel("Last Hand: " + hand.getPlayer().getName());
+			lastHand = new CardsLying(false);
+			nameText = new JLabel();
 			nameText.setFont(new Font("Arial", Font.BOLD, 20));
 			add(nameText);
 			add(lastHand);
 		}
+
+		/**
+		 * Shows the specified hand as the last hand on the table
+		 * @param player the name of the player of the hand
+		 * @param hand the cards of the hand on the table
+		 */
+		public void setHand(String player, Card[] hand) {
+			nameText.setText("Last Hand: " + player);
+			lastHand.setCards(true, hand, hand.length);
+		}
+
+		/**
+		 * Keeps the relayout after a change of name inside this panel
+		 * @return true
+		 */
+		@Override
+		public boolean isValidateRoot() {
+			return true;
+		}
 	}
 
 	/**
@@ -319,30 +491,53 @@ public class BigTwoGUI implements CardGameUI {
 	 */
 	class PlayerPanel extends JPanel {
 		private final JLabel avatarLabel;
+		private final javax.swing.border.TitledBorder nameBorder;
+		private final CardsLying cardsLying;
 		/**
 		 * Constructor for PlayerPanel.
 		 * @param i the index of the player
-		 * @param cards the cards in hand of the player
 		 */
-		public PlayerPanel(int i, CardList cards) {
+		public PlayerPanel(int i) {
 			// layout
 			setLayout(new BorderLayout());
 			// border
-			setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.BLACK), playerList.get(i).getName()));
-			((javax.swing.border.TitledBorder) getBorder()).setTitleFont(new Font("Arial", Font.BOLD, 20));
-			setBorder(BorderFactory.createCompoundBorder(new EmptyBorder(0, 30, 0, 10), getBorder()));
+			nameBorder = BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.BLACK), view.getName(i));
+			nameBorder.setTitleFont(new Font("Arial", Font.BOLD, 20));
+			setBorder(BorderFactory.createCompoundBorder(new EmptyBorder(0, 30, 0, 10), nameBorder));
 			// size
 			setPreferredSize(new Dimension(1000, 150));
 
 			// avatar
-			Image image = new ImageIcon("./players/" + i + ".png").getImage();
-			avatarLabel = new JLabel(new ImageIcon(image.getScaledInstance(120, 120, Image.SCALE_SMOOTH)));
+			avatarLabel = new JLabel(new ImageIcon(CardImages.getAvatar(i)));
 			avatarLabel.setBorder(new EmptyBorder(0, 10, 0, 0));
 			add(avatarLabel, BorderLayout.WEST);
 			// cards
-			JLayeredPane cardsLying = new CardsLying(i == activePlayer, cards, true);
+			cardsLying = new CardsLying(true);
 			add(cardsLying, BorderLayout.CENTER);
 		}
+
+		/**
+		 * Updates the name and the cards of the player if they have changed.
+		 * @param i the index of the player
+		 */
+		public void refresh(int i) {
+			String name = view.getName(i);
+			if (!Objects.equals(name, nameBorder.getTitle())) {
+				nameBorder.setTitle(name);
+				repaint();
+			}
+			cardsLying.setCards(i == activePlayer, view.getCards(i), view.getNumOfCards(i));
+		}
+
+		/**
+		 * Keeps layout changes inside this panel, whose size does not
+		 * depend on its contents
+		 * @return true
+		 */
+		@Override
+		public boolean isValidateRoot() {
+			return true;
+		}
 	}
 
 	/**
@@ -350,31 +545,67 @@ public class BigTwoGUI implements CardGameUI {
 	 * @author Darren Chang JR
 	 */
 	class CardsLying extends JLayeredPane {
-		
+		private final boolean clickable;
+		// the cards shown, as suit * 13 + rank, and whether they are face up
+		private int[] shownCards = new int[0];
+		private boolean shownFaceUp = false;
+
 		/**
 		 * Constructor for CardsLying
-		 * @param faceUp whether the cards are face up
-		 * @param cards the cards to be displayed
 		 * @param clickable whether the cards are clickable
 		 */
-		public CardsLying(boolean faceUp, CardList cards, boolean clickable) {
+		public CardsLying(boolean clickable) {
+			this.clickable = clickable;
 			setOpaque(false);
 			setBackground(new Color(0,0,0,0));
 			setPreferredSize(new Dimension((int) Toolkit.getDefaultToolkit().getScreenSize().getWidth(), 130));
-			for (int i = cards.size() - 1; i >= 0; i--) {
+		}
+
+		/**
+		 * Shows the specified cards, replacing the card panels only if the
+		 * cards have changed. The cards selected stay lifted.
+		 * @param faceUp whether the cards are face up
+		 * @param cards the cards to be displayed face up
+		 * @param numOfCards the number of cards to be displayed face down, which need not be known
+		 */
+		public void setCards(boolean faceUp, Card[] cards, int numOfCards) {
+			// cards face down are all shown as -1
+			int[] codes = new int[faceUp ? cards.length : numOfCards];
+			for (int i = 0; i < codes.length; i++) {
+				codes[i] = faceUp ? cards[i].getSuit() * 13 + cards[i].getRank() : -1;
+			}
+			if (faceUp == shownFaceUp && Arrays.equals(codes, shownCards)) {
+				if (faceUp && clickable) {
+					// the selection may have been reset since the last repaint
+					for (Component component : getComponents()) {
+						CardPanel cardPanel = (CardPanel) component;
+						cardPanel.setLifted(selected[cardPanel.index]);
+					}
+				}
+				return;
+			}
+			removeAll();
+			for (int i = codes.length - 1; i >= 0; i--) {
 				if (faceUp) {
-					CardPanel cardPanel = new CardPanel(i, cards.getCard(i), clickable);
+					CardPanel cardPanel = new CardPanel(i, cards[i], clickable);
 					cardPanel.setBounds(xLoc + xSpace * i, yLoc + ySpace, widthCard, heightCard);
 					cardPanel.addMouseListener(cardPanel);
 					cardPanel.setBackground(new Color(0,0,0,0));
-					add(cardPanel, cards.size() - i);
+					if (clickable) {
+						cardPanel.setLifted(selected[i]);
+					}
+					add(cardPanel, codes.length - i);
 				} else {
 					BackCardPanel backCardPanel = new BackCardPanel();
 					backCardPanel.setBounds(xLoc + xSpace * i, yLoc + ySpace, widthCard, heightCard);
 					backCardPanel.setBackground(new Color(0,0,0,0));
-					add(backCardPanel, cards.size() - i);
+					add(backCardPanel, codes.length - i);
 				}
 			}
+			shownCards = codes;
+			shownFaceUp = faceUp;
+			// the cards are placed by hand, so only a repaint is needed
+			repaint();
 		}
 	}
 
@@ -385,7 +616,7 @@ public class BigTwoGUI implements CardGameUI {
 	class BackCardPanel extends JPanel {
 		private final JLabel backLabel;
 		public BackCardPanel() {
-			backLabel = new JLabel(new ImageIcon("./cards/b.gif"));
+			backLabel = new JLabel(backIcon);
 			add(backLabel);
 		}
 	}
@@ -398,7 +629,7 @@ public class BigTwoGUI implements CardGameUI {
 		private final int index;
 		private final boolean clickable;
 		private boolean lifted = false;
-		private String cardName = "";
+		private final Image image;
 
 		/**
 		 * Constructor for CardPanel
@@ -409,40 +640,7 @@ public class BigTwoGUI implements CardGameUI {
 		public CardPanel(int index, Card card, boolean clickable) {
 			this.index = index;
 			this.clickable = clickable;
-			switch(card.getRank()) {
-				case 0:
-					cardName += "a";
-					break;
-				case 9:
-					cardName += "t";
-					break;
-				case 10:
-					cardName += "j";
-					break;
-				case 11:
-					cardName += "q";
-					break;
-				case 12:
-					cardName += "k";
-					break;
-				default:
-					cardName += card.getRank() + 1;
-			}
-
-			switch(card.getSuit()) {
-				case 0:
-					cardName += "d";
-					break;
-				case 1:
-					cardName += "c";
-					break;
-				case 2:
-					cardName += "h";
-					break;
-				case 3:
-					cardName += "s";
-					break;
-			}
+			this.image = CardImages.getFace(card);
 		}
 
 		/**
@@ -451,8 +649,7 @@ public class BigTwoGUI implements CardGameUI {
 		 */
 		@Override
 		protected void paintComponent(Graphics g) {
-			Image image = new ImageIcon("./cards/" + cardName + ".gif").getImage();
-			g.drawImage(image, 3, 4, this);
+			g.drawImage(image, 3, 4, null);
 		}
 		
 		/**
@@ -462,11 +659,20 @@ public class BigTwoGUI implements CardGameUI {
 		@Override
 		public void mouseClicked(MouseEvent arg0) {
 			if (clickable && globalEnable) {
-				lifted = !lifted;
-				selected[index] = lifted;
-				if (lifted) setBounds(xLoc + index * xSpace, 0, widthCard, heightCard);
-				else setBounds(xLoc + index * xSpace, ySpace, widthCard, heightCard);
-				frame.repaint();
+				selected[index] = !lifted;
+				// moving the card repaints only where it was and where it is
+				setLifted(!lifted);
+			}
+		}
+
+		/**
+		 * Lifts the card up if it is selected, or puts it down
+		 * @param lifted whether the card is lifted
+		 */
+		public void setLifted(boolean lifted) {
+			if (this.lifted != lifted) {
+				this.lifted = lifted;
+				setLocation(xLoc + index * xSpace, lifted ? 0 : ySpace);
 			}
 		}
 	
@@ -510,7 +716,8 @@ public class BigTwoGUI implements CardGameUI {
 			int[] cardIdx = getSelected();
 			if (cardIdx != null) {
 				resetSelected();
-				game.makeMove(activePlayer, cardIdx);
+				// the cards selected are those of the view shown
+				game.makeMove(view, activePlayer, cardIdx);
 			}
 		}
 	}
@@ -527,7 +734,7 @@ public class BigTwoGUI implements CardGameUI {
 		@Override
 		public void actionPerformed(ActionEvent arg0) {
 			resetSelected();
-			game.makeMove(activePlayer, null);
+			game.makeMove(view, activePlayer, null);
 		}
 	}
 
@@ -557,6 +764,7 @@ public class BigTwoGUI implements CardGameUI {
 		 */
 		@Override
 		public void actionPerformed(ActionEvent arg0) {
+			client.disconnect();
 			System.exit(0);
 		}
 	}
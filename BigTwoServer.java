@@ -10,6 +10,15 @@ public class BigTwoServer extends CardGameServer {
 	public BigTwoServer() {
 		super("Big Two Server", 4);
 	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoServer class hosting up to
+	 * the specified number of tables.
+	 * @param maxNumOfTables the maximum number of games hosted at the same time
+	 */
+	public BigTwoServer(int maxNumOfTables) {
+		super("Big Two Server", 4, maxNumOfTables);
+	}
 	
 	/**
 	 * Creates and returns an instance of the BigTwoDeck class.
@@ -19,16 +28,75 @@ public class BigTwoServer extends CardGameServer {
 		return new BigTwoDeck(); 
 	}
 	
+	/**
+	 * Creates and returns a rule engine holding the authoritative state of the
+	 * game at a new table.
+	 * @return an instance of the BigTwoEngine class
+	 */
+	public CardGame createGame() {
+		return new BigTwoEngine();
+	}
+
+	/**
+	 * Starts a new game in the rule engine of a table with the specified deck.
+	 * @param table the table where the game starts
+	 * @param deck the shuffled deck dealt to the players at the table
+	 */
+	protected void startGame(CardGameTable table, Deck deck) {
+		table.getGame().start(deck);
+	}
+
+	/**
+	 * Stops the game in progress in the rule engine of a table.
+	 * @param table the table where the game stops
+	 */
+	protected void stopGame(CardGameTable table) {
+		((BigTwoEngine) table.getGame()).stop();
+	}
+
+	/**
+	 * Checks a move against the rule engine of a table and applies it if it is legal.
+	 * @param table the table of the player
+	 * @param playerID the playerID of the player who makes the move
+	 * @param move the cards played by the player
+	 * @return true if the move is legal; false otherwise
+	 */
+	protected boolean checkMove(CardGameTable table, int playerID, CardGameMove move) {
+		return ((BigTwoEngine) table.getGame()).tryMove(playerID, move.getCards());
+	}
+	
 	/**
 	 * main() method for starting the server.
 	 * 
 	 * @param args
-	 *            the port to be used by the server. The default port 5000 will
-	 *            be used if no arguments has been supplied
+	 *            the port to be used by the server and, optionally, the
+	 *            maximum number of tables. The default port 2396 will be used
+	 *            if no arguments has been supplied. With --headless anywhere
+	 *            in the arguments, the server prints its log to the standard
+	 *            output instead of showing a console
 	 */
 	public static void main(String[] args) {
-		BigTwoServer server = new BigTwoServer();
-		if (args.length > 0) {
+		boolean headless = "true".equals(System.getProperty("java.awt.headless"));
+		int numOfArgs = 0;
+		for (int i = 0; i < args.length; i++) {
+			if ("--headless".equals(args[i])) {
+				headless = true;
+			} else {
+				args[numOfArgs++] = args[i];
+			}
+		}
+
+		FiveCardTable.installFromProperty();
+		BigTwoServer server = (numOfArgs > 1)
+				? new BigTwoServer(Integer.parseInt(args[1]))
+				: new BigTwoServer();
+		server.configureFromProperties();
+		if (headless) {
+			server.printLog();
+		} else {
+			server.showConsole();
+		}
+		if (numOfArgs > 0) {
 			server.start(Integer.parseInt(args[0]));
 		} else {
 			server.start(2396);
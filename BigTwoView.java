@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+
+/**
+ * Immutable snapshot of what the Big Two GUI shows of a game: the names and
+ * cards of the players (only how many, for cards that are not known) and the
+ * last hand on the table. The thread driving the
+ * game takes it, and the event dispatch thread shows it without touching the
+ * game itself.
+ * @author Darren Chang JR
+ */
+public final class BigTwoView {
+    private final String[] names;
+    private final Card[][] cards;
+    private final int[] numOfCards;
+    // cards of the last hand on the table, or null if there is none
+    private final Card[] lastHand;
+    private final String lastHandPlayer;
+    // number of moves made in the game, the sequence number of the next move
+    private final int numOfMoves;
+
+    /**
+     * Takes a snapshot of a game
+     * @param game the game
+     */
+    public BigTwoView(BigTwoEngine game) {
+        ArrayList<CardGamePlayer> playerList = game.getPlayerList();
+        names = new String[playerList.size()];
+        cards = new Card[playerList.size()][];
+        numOfCards = new int[playerList.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = playerList.get(i).getName();
+            cards[i] = toArray(playerList.get(i).getCardsInHand());
+            numOfCards[i] = playerList.get(i).getNumOfCards();
+        }
+        Hand hand = game.getLastHand();
+        lastHand = (hand == null ? null : toArray(hand));
+        lastHandPlayer = (hand == null ? null : hand.getPlayer().getName());
+        numOfMoves = game.getNumOfMoves();
+    }
+
+    /**
+     * Returns the number of players
+     * @return number of players
+     */
+    public int getNumOfPlayers() { return names.length; }
+
+    /**
+     * Returns the name of a player
+     * @param i index of the player
+     * @return name of the player
+     */
+    public String getName(int i) { return names[i]; }
+
+    /**
+     * Returns the cards in the hand of a player that are known; the array must not be changed
+     * @param i index of the player
+     * @return cards of the player
+     */
+    public Card[] getCards(int i) { return cards[i]; }
+
+    /**
+     * Returns the number of cards in the hand of a player, known or not
+     * @param i index of the player
+     * @return number of cards of the player
+     */
+    public int getNumOfCards(int i) { return numOfCards[i]; }
+
+    /**
+     * Returns the cards of the last hand on the table; the array must not be changed
+     * @return cards of the last hand, or null if the table is empty
+     */
+    public Card[] getLastHand() { return lastHand; }
+
+    /**
+     * Returns the name of the player of the last hand on the table
+     * @return name of the player, or null if the table is empty
+     */
+    public String getLastHandPlayer() { return lastHandPlayer; }
+
+    /**
+     * Returns the number of moves made in the game, which a move made on this snapshot carries
+     * @return number of moves made
+     */
+    public int getNumOfMoves() { return numOfMoves; }
+
+    private static Card[] toArray(CardList list) {
+        Card[] array = new Card[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.getCard(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,133 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class is used to measure what a card game server saves by encoding a
+ * broadcast once and sharing the frame across its recipients, instead of
+ * encoding the message again for every recipient. For a growing number of
+ * connections that throw away what they are sent, it prints the CPU time and
+ * the bytes allocated per broadcast both ways, on the thread that queues the
+ * frames, so that only the encoding and the queueing are measured.
+ * <p>
+ * Usage: java BroadcastBenchmark
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class BroadcastBenchmark {
+	// the numbers of recipients measured
+	private static final int[] NUM_OF_RECIPIENTS = { 4, 16, 64, 256, 1024 };
+	// the number of recipients reached by all the broadcasts of a run
+	private static final int NUM_OF_SENDS = 2000000;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            not being used
+	 */
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		CardGameServer server = new BigTwoServer(1);
+		char[] text = new char[1000];
+		Arrays.fill(text, 'x');
+		String[] names = { "MOVE(5)", "MSG", "MSG(1KB)" };
+		CardGameMessage[] messages = {
+				new CardGameMessage(CardGameMessage.MOVE, 2, new CardGameMove(
+						7, 0x1F000L)),
+				new CardGameMessage(CardGameMessage.MSG, 1,
+						"Player 1: hello everyone"),
+				new CardGameMessage(CardGameMessage.MSG, 1, new String(text)) };
+
+		System.out.println(String.format("%10s %-8s | %10s %10s | %10s %10s",
+				"recipients", "message", "each CPU", "each alloc", "once CPU",
+				"once alloc"));
+		for (int r = 0; r < NUM_OF_RECIPIENTS.length; r++) {
+			SinkConnection[] sinks = new SinkConnection[NUM_OF_RECIPIENTS[r]];
+			for (int i = 0; i < sinks.length; i++) {
+				sinks[i] = new SinkConnection(server);
+			}
+			int numOfBroadcasts = Math.max(2000, NUM_OF_SENDS / sinks.length);
+			for (int m = 0; m < messages.length; m++) {
+				long[] cpu = new long[2], allocated = new long[2];
+				// the last of three rounds is measured, after the warm-up
+				for (int round = 0; round < 3; round++) {
+					for (int once = 0; once < 2; once++) {
+						long cpuStart = threads.getCurrentThreadCpuTime();
+						long allocatedStart = threads
+								.getThreadAllocatedBytes(Thread.currentThread()
+										.getId());
+						for (int k = 0; k < numOfBroadcasts; k++) {
+							broadcast(server, sinks, messages[m], once == 1);
+						}
+						cpu[once] = threads.getCurrentThreadCpuTime() - cpuStart;
+						allocated[once] = threads.getThreadAllocatedBytes(Thread
+								.currentThread().getId()) - allocatedStart;
+					}
+				}
+				System.out.println(String.format(
+						"%10d %-8s | %7.1f us %8d B | %7.1f us %8d B",
+						sinks.length, names[m], cpu[0] / 1e3 / numOfBroadcasts,
+						allocated[0] / numOfBroadcasts, cpu[1] / 1e3
+								/ numOfBroadcasts, allocated[1]
+								/ numOfBroadcasts));
+			}
+		}
+	} // main
+
+	/**
+	 * Sends a message to every connection, encoding it once if once is true,
+	 * or once for every connection otherwise.
+	 */
+	private static void broadcast(CardGameServer server,
+			SinkConnection[] sinks, CardGameMessage message, boolean once) {
+		if (!once) {
+			for (int i = 0; i < sinks.length; i++) {
+				sinks[i].send(message);
+			}
+			return;
+		}
+		ByteBuffer frame;
+		try {
+			frame = server.codec.encode(message);
+		} catch (java.io.IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		for (int i = 0; i < sinks.length; i++) {
+			sinks[i].sendFrame(frame);
+		}
+	}
+
+	/**
+	 * This inner class is used to model a connection that throws away what it
+	 * is sent as soon as it is queued.
+	 */
+	private static class SinkConnection extends ClientConnection {
+		/**
+		 * Creates and returns an instance of the SinkConnection class.
+		 *
+		 * @param server
+		 *            the server of the connection
+		 */
+		SinkConnection(CardGameServer server) {
+			super(server);
+		}
+
+		protected void scheduleWrite() {
+			ByteBuffer[] frames;
+			while ((frames = takeFrames()) != null) {
+				// thrown away
+			}
+		}
+
+		public void close() {
+			closeOutbound();
+		}
+
+		public String getRemoteSocketAddress() {
+			return "sink";
+		}
+	} // SinkConnection
+}
@@ -21,15 +21,19 @@ public class CardGameMessage extends GameMessage {
 	public static final int JOIN = 1;
 	/**
 	 * Sent by the server to a client after a connection is established but the
-	 * server is not able to serve this client because it is full. In this
-	 * message, playerID is -1 (not being used) and data is simply null (not
-	 * being used).
+	 * server is not able to serve this client because it is full. A full
+	 * server waits a second for a RESUME first, as a client resuming its
+	 * session needs no new slot. In this message, playerID is -1 (not being
+	 * used) and data is simply null (not being used).
 	 */
 	public static final int FULL = 2;
 	/**
 	 * Broadcast by a server when a client loses connection to the server. In this message,
 	 * playerID specifies the player who loses the connection to the server, and data is a string
-	 * representation of the IP address and TCP port of this player.
+	 * representation of the IP address and TCP port of this player. A client that loses the
+	 * connection keeps its slot for a while to resume its session, so the server only broadcasts
+	 * QUIT once that time is up, or at once when a client sends QUIT (with playerID -1 and data
+	 * null) before leaving on purpose.
 	 */
 	public static final int QUIT = 3;
 	/**
@@ -40,14 +44,17 @@ public class CardGameMessage extends GameMessage {
 	 */
 	public static final int READY = 4;
 	/**
-	 * Broadcast by the server when all clients are ready for a new game. In this message, playerID is 
-	 * -1 (no being used), and data is a reference to a Deck object (a shuffled deck for the new game).
+	 * Sent by the server to every client when all clients are ready for a new game. In this message,
+	 * playerID specifies the player who makes the first move (or -1 if the server does not know), and
+	 * data is a reference to a CardList object holding only the cards dealt to the local player; every
+	 * other player is dealt as many.
 	 */
 	public static final int START = 5;
 	/**
 	 * Sent by a client when the local player makes a move. The server will broadcast this message upon
-	 * receiving it. In this message, playerID specifies the player who makes the move, and data is a
-	 * reference to an array of int specifying the indices of the cards being played.
+	 * receiving it if the move is legal and its sequence number is that of the next move, and answers
+	 * with REJECT otherwise. In this message, playerID specifies the player who makes the move, and data
+	 * is a reference to a CardGameMove object specifying the cards being played.
 	 */
 	public static final int MOVE = 6;
 	/**
@@ -55,8 +62,45 @@ public class CardGameMessage extends GameMessage {
 	 * The server will first add the name, IP address and TCP port of the player into the chat
 	 * message, and then broadcast the message. In this message, playerID specifies the player who
 	 * sent this chat message, and data is a reference to a string containing a formated chat message.
+	 * Chat messages are not numbered in the session, and are not sent again to a client that
+	 * reconnects.
 	 */
 	public static final int MSG = 7;
+	/**
+	 * Sent by the server to a client when the move it sent is not legal. The
+	 * server does not broadcast an illegal move. In this message, playerID
+	 * specifies the player who made the move, and data is a reference to the
+	 * CardGameMove object sent in the rejected MOVE message.
+	 */
+	public static final int REJECT = 8;
+	/**
+	 * Sent by the server to a client right after PLAYER_LIST. In this message,
+	 * playerID specifies the playerID of the local player, and data is a
+	 * reference to an array of two strings: a string identifying its session,
+	 * which the client sends back in RESUME to get its slot back after losing
+	 * the connection, and the number of milliseconds a connection may stay
+	 * quiet before the server sends a HEARTBEAT on it, or 0 if it sends none.
+	 */
+	public static final int SESSION = 9;
+	/**
+	 * Sent by a client as its first message after reconnecting to the server.
+	 * In this message, playerID is -1 and data is a reference to an array of
+	 * two strings: the string received in SESSION and the number of messages
+	 * received since. The server answers with RESUME, where playerID specifies
+	 * the slot given back to the client, or -1 if the session has expired, in
+	 * which case the client joins with the PLAYER_LIST it received on
+	 * connecting. When the slot is given back, data is either null, and every
+	 * message the client missed follows, or a reference to a CardGameSnapshot
+	 * of the table taking their place.
+	 */
+	public static final int RESUME = 10;
+	/**
+	 * Sent by the server to a client it has not heard from, or written to, for
+	 * a while, and sent back by the client at once, so that a connection lost
+	 * without being closed is noticed at both ends. It is not numbered in the
+	 * session. In this message, playerID is -1 and data is null.
+	 */
+	public static final int HEARTBEAT = 11;
 
 	/**
 	 * Creates and returns an instance of CardGameMessage.
@@ -0,0 +1,63 @@
+/**
+ * This class is used to model a move in a network card game: the cards played,
+ * as a bit mask in the layout of HandMask, and the sequence number of the
+ * move, i.e. the number of moves made in the game before it. A move names the
+ * cards it plays rather than their places in a hand, so the hands of the other
+ * players need not be known, and the server rejects a move whose sequence
+ * number shows it was made before the last move was seen. Only the lowest 8
+ * bits of the sequence number travel, which is enough to tell such a move, as
+ * it is never more than a few moves behind.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class CardGameMove {
+	// the number of moves made in the game before this one
+	private final int sequence;
+	// the cards played, or 0 for a pass
+	private final long cards;
+
+	/**
+	 * Creates and returns an instance of the CardGameMove class.
+	 *
+	 * @param sequence
+	 *            the number of moves made in the game before this one
+	 * @param cards
+	 *            the bit mask of the cards played, or 0 for a pass
+	 */
+	public CardGameMove(int sequence, long cards) {
+		this.sequence = sequence;
+		this.cards = cards;
+	}
+
+	/**
+	 * Returns the sequence number of this move.
+	 *
+	 * @return the number of moves made in the game before this one
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the cards played in this move.
+	 *
+	 * @return the bit mask of the cards played, or 0 for a pass
+	 */
+	public long getCards() {
+		return cards;
+	}
+
+	/**
+	 * Returns true if this move is the next move of a game, i.e. its sequence
+	 * number is the number of moves made so far, comparing the lowest 8 bits
+	 * that travel.
+	 *
+	 * @param numOfMoves
+	 *            the number of moves made in the game so far
+	 * @return true if this move is the next one; false if it is stale
+	 */
+	public boolean isNext(int numOfMoves) {
+		return ((sequence ^ numOfMoves) & 0xFF) == 0;
+	}
+}
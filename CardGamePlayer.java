@@ -7,6 +7,8 @@ public class CardGamePlayer {
 	private static int playerId = 0;
 	private String name = "";
 	private CardList cardsInHand = new CardList();
+	// the number of cards held but not known, e.g. by the client of another player
+	private int numOfHiddenCards = 0;
 
 	/**
 	 * Creates and returns an instance of the Player class.
@@ -54,31 +56,53 @@ public class CardGamePlayer {
 		}
 	}
 
+	/**
+	 * Adds the specified number of cards that are not known to this player.
+	 * 
+	 * @param numOfCards the number of hidden cards to be added to this player
+	 */
+	public void addHiddenCards(int numOfCards) {
+		numOfHiddenCards += numOfCards;
+	}
+
 	/**
 	 * Removes the list of cards from this player, if they are held by this player.
+	 * A card that is not known to be held is taken from the hidden cards.
 	 * 
 	 * @param cards the list of cards to be removed from this player
 	 */
 	public void removeCards(CardList cards) {
 		for (int i = 0; i < cards.size(); i++) {
-			cardsInHand.removeCard(cards.getCard(i));
+			if (!cardsInHand.removeCard(cards.getCard(i)) && numOfHiddenCards > 0) {
+				numOfHiddenCards--;
+			}
 		}
 	}
 
 	/**
-	 * Removes all cards from this player.
+	 * Removes all cards from this player, including the hidden ones.
 	 */
 	public void removeAllCards() {
 		cardsInHand = new CardList();
+		numOfHiddenCards = 0;
 	}
 
 	/**
-	 * Returns the number of cards held by this player.
+	 * Returns the number of cards held by this player, including the hidden ones.
 	 * 
 	 * @return the number of cards held by this player
 	 */
 	public int getNumOfCards() {
-		return cardsInHand.size();
+		return cardsInHand.size() + numOfHiddenCards;
+	}
+
+	/**
+	 * Returns the number of cards held by this player that are not known.
+	 * 
+	 * @return the number of hidden cards held by this player
+	 */
+	public int getNumOfHiddenCards() {
+		return numOfHiddenCards;
 	}
 
 	/**
@@ -89,7 +113,7 @@ public class CardGamePlayer {
 	}
 
 	/**
-	 * Returns the list of cards held by this player.
+	 * Returns the list of cards held by this player, without the hidden ones.
 	 * 
 	 * @return the list of cards held by this player
 	 */
@@ -1,17 +1,17 @@
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
-
-import javax.swing.JFrame;
-import javax.swing.JMenu;
-import javax.swing.JMenuBar;
-import javax.swing.JMenuItem;
-import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
-import javax.swing.ScrollPaneConstants;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class is used to model a card game server.
@@ -20,31 +20,185 @@ import javax.swing.ScrollPaneConstants;
  *
  */
 public class CardGameServer {
+	/**
+	 * The maximum number of tables hosted by a server unless specified
+	 */
+	public static final int DEFAULT_MAX_NUM_OF_TABLES = 1000;
+	/**
+	 * Serves every client with a platform thread of its own, which blocks on
+	 * the socket of the client
+	 */
+	public static final int THREAD_PER_CLIENT = 0;
+	/**
+	 * Serves all clients with a small fixed pool of threads, each running a
+	 * selector over many non-blocking socket channels
+	 */
+	public static final int SELECTOR = 1;
+	/**
+	 * Serves every client with a virtual thread of its own, which blocks on
+	 * the socket of the client. Needs Java 21 or later
+	 */
+	public static final int VIRTUAL_THREAD = 2;
+	/**
+	 * Disconnects a client whose queue of outgoing messages is full
+	 */
+	public static final int DISCONNECT_SLOW_CLIENT = 0;
+	/**
+	 * Drops the chat messages to a client whose queue of outgoing messages is
+	 * full, and disconnects it if any other message does not fit, so that it
+	 * resumes its session
+	 */
+	public static final int DROP_MESSAGES = 1;
+	/**
+	 * The number of bytes queued for a client before it counts as slow unless
+	 * specified
+	 */
+	public static final int DEFAULT_MAX_OUTBOUND_BYTES = 256 * 1024;
+	/**
+	 * The number of milliseconds the slot of a client that lost its
+	 * connection is kept for it to resume its session unless specified
+	 */
+	public static final int DEFAULT_RESUME_TIMEOUT = 30 * 1000;
+	/**
+	 * The number of bytes of the latest frames kept in the session of a
+	 * client, to be sent again if it reconnects. A client that missed more is
+	 * sent a snapshot of its table instead
+	 */
+	public static final int SESSION_LOG_BYTES = 4 * 1024;
+	/**
+	 * The number of milliseconds a connection may stay quiet before the server
+	 * sends a heartbeat on it unless specified
+	 */
+	public static final int DEFAULT_HEARTBEAT_INTERVAL = 10 * 1000;
+	/**
+	 * The number of milliseconds without a message from a client before its
+	 * connection counts as lost unless specified
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 30 * 1000;
+	/**
+	 * The number of milliseconds a client may leave what it is sent unread
+	 * before its connection counts as lost unless specified
+	 */
+	public static final int DEFAULT_WRITE_TIMEOUT = 30 * 1000;
+	/**
+	 * The system property choosing the I/O mode: "thread", "virtual" or
+	 * "selector"
+	 */
+	public static final String IO_MODE_PROPERTY = "cardgame.io";
+	/**
+	 * The system property setting the number of selector threads
+	 */
+	public static final String IO_THREADS_PROPERTY = "cardgame.iothreads";
+	/**
+	 * The system property choosing the slow client policy: "disconnect" or
+	 * "drop"
+	 */
+	public static final String SLOW_CLIENT_PROPERTY = "cardgame.slowclient";
+	/**
+	 * The system property setting the number of bytes queued for a client
+	 * before it counts as slow
+	 */
+	public static final String MAX_OUTBOUND_PROPERTY = "cardgame.maxoutbound";
+	/**
+	 * The system property choosing the lowest level logged: "debug", "info",
+	 * "warning" or "error"
+	 */
+	public static final String LOG_LEVEL_PROPERTY = "cardgame.loglevel";
+	/**
+	 * The system property naming a file the log is also written to, rolled
+	 * over every 10 MB with 5 old files kept
+	 */
+	public static final String LOG_FILE_PROPERTY = "cardgame.logfile";
+	/**
+	 * The system property setting the number of milliseconds the slot of a
+	 * client that lost its connection is kept, or 0 to free it at once
+	 */
+	public static final String RESUME_TIMEOUT_PROPERTY = "cardgame.resumetimeout";
+	/**
+	 * The system property setting the number of milliseconds a connection may
+	 * stay quiet before a heartbeat is sent, or 0 to turn heartbeats and idle
+	 * timeouts off
+	 */
+	public static final String HEARTBEAT_PROPERTY = "cardgame.heartbeat";
+	/**
+	 * The system property setting the number of milliseconds without a message
+	 * from a client before its connection is closed
+	 */
+	public static final String READ_TIMEOUT_PROPERTY = "cardgame.readtimeout";
+	/**
+	 * The system property setting the number of milliseconds a client may
+	 * leave what it is sent unread before its connection is closed
+	 */
+	public static final String WRITE_TIMEOUT_PROPERTY = "cardgame.writetimeout";
+	// the number of milliseconds of a tick of the timer
+	private static final int TIMER_TICK = 100;
+	// the number of milliseconds a connection to a full server waits for a
+	// RESUME before it is sent FULL, as a client resuming its session needs
+	// no new slot
+	private static final int FULL_GRACE = 1000;
+	// Thread.startVirtualThread(Runnable), or null before Java 21; looked up
+	// by reflection so that the server still compiles on older versions
+	private static final Method startVirtualThread = findStartVirtualThread();
+	// codec of the messages sent to and received from the clients
+	final MessageCodec codec = new MessageCodec();
 	// Flag for silent mode (prevents printing the stack trace)
 	boolean silentMode = true;
 	// The name of this card game server
 	private String serverName;
 	// The maximum number of players in a card game
 	private final int maxNumOfPlayers;
-	// Array for holding sockets of the clients
-	private Socket[] clientSockets;
-	// Array for holding ObjectOutputStreams of the clients
-	private ObjectOutputStream[] clientOutputStreams;
-	// Array for holding player names of the clients
-	private String[] clientNames;
-	// Array for holding ready states of the clients
-	private boolean[] clientReadyStates;
-	// number of current players
-	private int numOfPlayers = 0;
-	// the main frame of the server
-	private JFrame frame = null;
-	// text area for displaying server states
-	private JTextArea textArea = null;
+	// The maximum number of tables hosted by this server
+	private final int maxNumOfTables;
+	// List of the tables hosted by this server
+	private ArrayList<CardGameTable> tables = new ArrayList<CardGameTable>();
+	// the log of the server, shown on its console if it has one
+	final ServerLog log = new ServerLog();
 	// a boolean indicating if the server is up
 	private boolean serverUp = false;
+	// the way the server reads from and writes to its clients
+	private int ioMode = SELECTOR;
+	// lock guarding the list of tables; each table has a lock of its own for
+	// its slots and game, taken after this one. ReentrantLocks rather than
+	// monitors so that a virtual thread blocked on a socket while holding one
+	// does not pin its carrier thread
+	private final ReentrantLock tablesLock = new ReentrantLock();
+	// what happens to a client whose queue of outgoing messages is full
+	private int slowClientPolicy = DISCONNECT_SLOW_CLIENT;
+	// the number of bytes queued for a client before it counts as slow
+	private int maxOutboundBytes = DEFAULT_MAX_OUTBOUND_BYTES;
+	// pool of the platform threads writing to the clients
+	private final ExecutorService writerPool = Executors.newCachedThreadPool();
+	// the number of selector threads in the SELECTOR mode
+	private int numOfIOThreads = Math.min(4,
+			Runtime.getRuntime().availableProcessors());
+	// the number of milliseconds the slot of a client that lost its
+	// connection is kept for it
+	private int resumeTimeout = DEFAULT_RESUME_TIMEOUT;
+	// the table of every session, by its token
+	private final ConcurrentHashMap<String, CardGameTable> sessionTables = new ConcurrentHashMap<String, CardGameTable>();
+	// the number of milliseconds a connection may stay quiet before a
+	// heartbeat is sent on it, or 0 if idle connections are not checked
+	private int heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+	// the number of milliseconds without a message from a client before its
+	// connection is closed
+	private int readTimeout = DEFAULT_READ_TIMEOUT;
+	// the number of milliseconds a client may leave what it is sent unread
+	// before its connection is closed
+	private int writeTimeout = DEFAULT_WRITE_TIMEOUT;
+	// the number of connections closed for not sending anything, and for
+	// not reading what they were sent; only incremented by the timer
+	private volatile long numOfReadIdleClosed = 0;
+	private volatile long numOfWriteIdleClosed = 0;
+	// timer checking every connection for idleness and freeing the slots
+	// kept for too long, whose wheel turns once in about 51 s
+	private final TimerWheel timer = new TimerWheel("CardGameServer-timer",
+			TIMER_TICK, 512);
+	// source of the session tokens
+	private final SecureRandom random = new SecureRandom();
 
 	/**
-	 * Creates and returns an instance of the BigTwoServer class.
+	 * Creates and returns an instance of the CardGameServer class hosting up to
+	 * DEFAULT_MAX_NUM_OF_TABLES tables.
 	 * 
 	 * @param serverName
 	 *            the name of this card game server
@@ -52,50 +206,303 @@ public class CardGameServer {
 	 *            the maximum number of players in a card game
 	 */
 	public CardGameServer(String serverName, int maxNumOfPlayers) {
+		this(serverName, maxNumOfPlayers, DEFAULT_MAX_NUM_OF_TABLES);
+	}
+
+	/**
+	 * Creates and returns an instance of the CardGameServer class.
+	 * 
+	 * @param serverName
+	 *            the name of this card game server
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players in a card game
+	 * @param maxNumOfTables
+	 *            the maximum number of tables (games) hosted at the same time
+	 */
+	public CardGameServer(String serverName, int maxNumOfPlayers,
+			int maxNumOfTables) {
 		this.serverName = serverName;
 		this.maxNumOfPlayers = maxNumOfPlayers;
+		this.maxNumOfTables = maxNumOfTables;
+	}
+
+	/**
+	 * Shows the log of the server on a Swing console, which keeps its last
+	 * lines. A server without a console runs headless and never loads AWT or
+	 * Swing.
+	 */
+	public void showConsole() {
+		log.setConsole(new ServerConsole(serverName,
+				ServerConsole.DEFAULT_MAX_LINES));
+	}
+
+	/**
+	 * Prints the log of the server to the standard output, e.g. when it runs
+	 * headless.
+	 */
+	public void printLog() {
+		log.setPrinting(true);
+	}
+
+	/**
+	 * Sets the way the server reads from and writes to its clients. Must be
+	 * called before the server starts.
+	 * 
+	 * @param ioMode
+	 *            THREAD_PER_CLIENT, VIRTUAL_THREAD or SELECTOR
+	 */
+	public void setIOMode(int ioMode) {
+		if (ioMode != THREAD_PER_CLIENT && ioMode != SELECTOR
+				&& ioMode != VIRTUAL_THREAD) {
+			throw new IllegalArgumentException("Unknown I/O mode: " + ioMode);
+		}
+		if (ioMode == VIRTUAL_THREAD && startVirtualThread == null) {
+			throw new UnsupportedOperationException(
+					"Virtual threads need Java 21 or later");
+		}
+		this.ioMode = ioMode;
+	}
+
+	/**
+	 * Sets the number of selector threads used in the SELECTOR mode. Must be
+	 * called before the server starts.
+	 * 
+	 * @param numOfIOThreads
+	 *            the number of selector threads, at least 1
+	 */
+	public void setNumOfIOThreads(int numOfIOThreads) {
+		if (numOfIOThreads < 1) {
+			throw new IllegalArgumentException("At least 1 I/O thread: "
+					+ numOfIOThreads);
+		}
+		this.numOfIOThreads = numOfIOThreads;
+	}
+
+	/**
+	 * Sets what happens to a client that reads its messages more slowly than
+	 * the server sends them.
+	 * 
+	 * @param slowClientPolicy
+	 *            DISCONNECT_SLOW_CLIENT or DROP_MESSAGES
+	 * @param maxOutboundBytes
+	 *            the number of bytes queued for a client before the policy
+	 *            applies
+	 */
+	public void setSlowClientPolicy(int slowClientPolicy, int maxOutboundBytes) {
+		if (slowClientPolicy != DISCONNECT_SLOW_CLIENT
+				&& slowClientPolicy != DROP_MESSAGES) {
+			throw new IllegalArgumentException("Unknown slow client policy: "
+					+ slowClientPolicy);
+		}
+		if (maxOutboundBytes < MessageFrame.HEADER_SIZE
+				+ MessageFrame.MAX_PAYLOAD_SIZE) {
+			throw new IllegalArgumentException("Room for a frame is needed: "
+					+ maxOutboundBytes);
+		}
+		this.slowClientPolicy = slowClientPolicy;
+		this.maxOutboundBytes = maxOutboundBytes;
+	}
+
+	/**
+	 * Returns what happens to a client whose queue of outgoing messages is
+	 * full.
+	 * 
+	 * @return DISCONNECT_SLOW_CLIENT or DROP_MESSAGES
+	 */
+	public int getSlowClientPolicy() {
+		return slowClientPolicy;
+	}
+
+	/**
+	 * Returns the number of bytes queued for a client before it counts as
+	 * slow.
+	 * 
+	 * @return the maximum number of bytes queued for a client
+	 */
+	public int getMaxOutboundBytes() {
+		return maxOutboundBytes;
+	}
+
+	/**
+	 * Sets the number of milliseconds the slot of a client that lost its
+	 * connection is kept for it to resume its session. The game at its table
+	 * waits for it meanwhile.
+	 * 
+	 * @param resumeTimeout
+	 *            the number of milliseconds, or 0 to free the slot at once
+	 */
+	public void setResumeTimeout(int resumeTimeout) {
+		if (resumeTimeout < 0) {
+			throw new IllegalArgumentException("Negative resume timeout: "
+					+ resumeTimeout);
+		}
+		this.resumeTimeout = resumeTimeout;
+	}
+
+	/**
+	 * Returns the number of milliseconds the slot of a client that lost its
+	 * connection is kept for it.
+	 * 
+	 * @return the number of milliseconds, or 0 if the slot is freed at once
+	 */
+	public int getResumeTimeout() {
+		return resumeTimeout;
+	}
+
+	/**
+	 * Sets how the server finds the connections lost without being closed, as
+	 * with a client whose machine went away. A heartbeat is sent to a client
+	 * once nothing has been received from it, or sent to it, for
+	 * heartbeatInterval milliseconds, and the client answers it, so that a
+	 * client that does not send anything for readTimeout milliseconds, or does
+	 * not read what it is sent for writeTimeout milliseconds, is taken for
+	 * lost and its connection is closed. Its slot is then kept or freed as if
+	 * the connection had been closed by the client. As connections are only
+	 * checked every heartbeatInterval milliseconds, a quiet client may be
+	 * sent its first heartbeat up to twice that long after its last message,
+	 * so readTimeout must leave room for two intervals and the answer. Must
+	 * be called before the server starts.
+	 * 
+	 * @param heartbeatInterval
+	 *            the number of milliseconds, or 0 to turn heartbeats and idle
+	 *            timeouts off
+	 * @param readTimeout
+	 *            the number of milliseconds, more than twice
+	 *            heartbeatInterval
+	 * @param writeTimeout
+	 *            the number of milliseconds, at least 1
+	 */
+	public void setIdleTimeouts(int heartbeatInterval, int readTimeout,
+			int writeTimeout) {
+		if (heartbeatInterval < 0) {
+			throw new IllegalArgumentException("Negative heartbeat interval: "
+					+ heartbeatInterval);
+		}
+		if (heartbeatInterval > 0
+				&& (readTimeout <= 2L * heartbeatInterval + TIMER_TICK
+						|| writeTimeout < 1)) {
+			throw new IllegalArgumentException(
+					"Timeouts too short for the heartbeats: " + readTimeout
+							+ ", " + writeTimeout);
+		}
+		this.heartbeatInterval = heartbeatInterval;
+		this.readTimeout = readTimeout;
+		this.writeTimeout = writeTimeout;
+	}
 
-		// creates arrays for holding client sockets, output streams, player
-		// names, and ready states
-		clientSockets = new Socket[maxNumOfPlayers];
-		clientOutputStreams = new ObjectOutputStream[maxNumOfPlayers];
-		clientNames = new String[maxNumOfPlayers];
-		clientReadyStates = new boolean[maxNumOfPlayers];
+	/**
+	 * Returns the number of milliseconds a connection may stay quiet before a
+	 * heartbeat is sent on it.
+	 * 
+	 * @return the number of milliseconds, or 0 if idle connections are not
+	 *         checked
+	 */
+	public int getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	/**
+	 * Returns the number of connections closed so far because the client did
+	 * not send anything, not even a heartbeat, for the read timeout.
+	 * 
+	 * @return the number of connections closed
+	 */
+	public long getNumOfReadIdleClosed() {
+		return numOfReadIdleClosed;
+	}
 
-		buildGUI();
+	/**
+	 * Returns the number of connections closed so far because the client did
+	 * not read what it was sent for the write timeout.
+	 * 
+	 * @return the number of connections closed
+	 */
+	public long getNumOfWriteIdleClosed() {
+		return numOfWriteIdleClosed;
 	}
 
 	/**
-	 * Builds the GUI for the server
-	 */
-	private void buildGUI() {
-		// build a GUI
-		frame = new JFrame(serverName);
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		textArea = new JTextArea(20, 40);
-		textArea.setEditable(false);
-		textArea.setLineWrap(true);
-		textArea.setWrapStyleWord(true);
-		JScrollPane scroller = new JScrollPane(textArea);
-		scroller.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
-		scroller.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
-		frame.add(scroller);
-
-		// build the menu bar
-		JMenuItem clearMenuItem = new JMenuItem("Clear console");
-		clearMenuItem.addActionListener(new ClearMenuItemListener());
-		JMenuItem quitMenuItem = new JMenuItem("Quit");
-		quitMenuItem.addActionListener(new QuitMenuItemListener());
-		JMenu menu = new JMenu("Option");
-		menu.add(clearMenuItem);
-		menu.add(quitMenuItem);
-		JMenuBar menuBar = new JMenuBar();
-		menuBar.add(menu);
-		frame.setJMenuBar(menuBar);
-
-		frame.pack();
-		frame.setVisible(true);
-	} // buildGUI
+	 * Returns Thread.startVirtualThread(Runnable) if the running Java has
+	 * virtual threads.
+	 * 
+	 * @return the method, or null if virtual threads are not available
+	 */
+	private static Method findStartVirtualThread() {
+		try {
+			return Thread.class.getMethod("startVirtualThread", Runnable.class);
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Sets the I/O mode, the number of I/O threads, the slow client policy and
+	 * the log from the system properties IO_MODE_PROPERTY,
+	 * IO_THREADS_PROPERTY, SLOW_CLIENT_PROPERTY, MAX_OUTBOUND_PROPERTY,
+	 * LOG_LEVEL_PROPERTY and LOG_FILE_PROPERTY, the resume timeout from
+	 * RESUME_TIMEOUT_PROPERTY, and the heartbeat interval and idle timeouts
+	 * from HEARTBEAT_PROPERTY, READ_TIMEOUT_PROPERTY and
+	 * WRITE_TIMEOUT_PROPERTY, if they are set.
+	 */
+	public void configureFromProperties() {
+		String mode = System.getProperty(IO_MODE_PROPERTY);
+		if ("thread".equals(mode)) {
+			setIOMode(THREAD_PER_CLIENT);
+		} else if ("virtual".equals(mode)) {
+			setIOMode(VIRTUAL_THREAD);
+		} else if ("selector".equals(mode)) {
+			setIOMode(SELECTOR);
+		} else if (mode != null) {
+			throw new IllegalArgumentException("Unknown I/O mode: " + mode);
+		}
+		String threads = System.getProperty(IO_THREADS_PROPERTY);
+		if (threads != null) {
+			setNumOfIOThreads(Integer.parseInt(threads));
+		}
+		String policy = System.getProperty(SLOW_CLIENT_PROPERTY);
+		String maxOutbound = System.getProperty(MAX_OUTBOUND_PROPERTY);
+		if (policy != null || maxOutbound != null) {
+			int slowClientPolicy = this.slowClientPolicy;
+			if ("drop".equals(policy)) {
+				slowClientPolicy = DROP_MESSAGES;
+			} else if ("disconnect".equals(policy)) {
+				slowClientPolicy = DISCONNECT_SLOW_CLIENT;
+			} else if (policy != null) {
+				throw new IllegalArgumentException("Unknown slow client policy: "
+						+ policy);
+			}
+			setSlowClientPolicy(slowClientPolicy, (maxOutbound != null)
+					? Integer.parseInt(maxOutbound) : maxOutboundBytes);
+		}
+		String timeout = System.getProperty(RESUME_TIMEOUT_PROPERTY);
+		if (timeout != null) {
+			setResumeTimeout(Integer.parseInt(timeout));
+		}
+		String heartbeat = System.getProperty(HEARTBEAT_PROPERTY);
+		String readIdle = System.getProperty(READ_TIMEOUT_PROPERTY);
+		String writeIdle = System.getProperty(WRITE_TIMEOUT_PROPERTY);
+		if (heartbeat != null || readIdle != null || writeIdle != null) {
+			setIdleTimeouts((heartbeat != null) ? Integer.parseInt(heartbeat)
+					: heartbeatInterval, (readIdle != null) ? Integer
+					.parseInt(readIdle) : readTimeout,
+					(writeIdle != null) ? Integer.parseInt(writeIdle)
+							: writeTimeout);
+		}
+		String logLevel = System.getProperty(LOG_LEVEL_PROPERTY);
+		if (logLevel != null) {
+			log.setLevel(ServerLog.parseLevel(logLevel));
+		}
+		String logFile = System.getProperty(LOG_FILE_PROPERTY);
+		if (logFile != null) {
+			try {
+				log.setFile(logFile, 10 * 1024 * 1024, 5);
+			} catch (IOException ex) {
+				log.log(ServerLog.ERROR, "Error in opening the log file "
+						+ logFile);
+				if (!silentMode) ex.printStackTrace();
+			}
+		}
+	}
 
 	/**
 	 * Starts the server at the specified port
@@ -104,21 +511,45 @@ public class CardGameServer {
 	 *            the specified port at which the server starts
 	 */
 	public void start(int port) {
+		timer.start();
+		if (ioMode == SELECTOR) {
+			// serves all clients with a small pool of selector threads
+			new NioTransport(this, numOfIOThreads).start(port);
+			return;
+		}
+
 		// start the server
 		try {
-			// creates a ServerScoket
-			ServerSocket serverSocket = new ServerSocket(port);
+			// creates a ServerScoket with room for bursts of connections
+			ServerSocket serverSocket = new ServerSocket(port, 1024);
 			println("Starts up the server at localhost:"
 					+ serverSocket.getLocalPort());
 			serverUp = true;
 			while (serverUp) {
 				// waits for clients to connect
 				Socket clientSocket = serverSocket.accept();
-				addConnection(clientSocket);
+				SocketConnection connection;
+				try {
+					connection = new SocketConnection(clientSocket);
+				} catch (IOException ex) {
+					log.log(ServerLog.WARNING,
+							"Error in establishing a connection with a client at "
+									+ clientSocket.getRemoteSocketAddress());
+					if (!silentMode) ex.printStackTrace();
+					continue;
+				}
+				addConnection(connection);
+
+				// creates a thread for receiving messages from this client,
+				// also while it waits for a slot on a full server
+				if (!connection.isClosing()) {
+					startThread(new ClientHandler(connection));
+				}
 			} // while
 			serverSocket.close();
 		} catch (Exception ex) {
-			println("Error in starting up the server at localhost:" + port);
+			log.log(ServerLog.ERROR,
+					"Error in starting up the server at localhost:" + port);
 			if (!silentMode) ex.printStackTrace();
 		}
 	} // start
@@ -126,66 +557,123 @@ public class CardGameServer {
 	/**
 	 * Parses the incoming message from the specified client.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the specified client
+	 * @param table
+	 *            the table of the specified client
+	 * @param connection
+	 *            the connection to the specified client
 	 * @param message
 	 *            the message received from the specified client
 	 */
-	private synchronized void parseMessage(Socket clientSocket,
+	void parseMessage(CardGameTable table, ClientConnection connection,
 			CardGameMessage message) {
-		// updates the playerID
-		for (int i = 0; i < maxNumOfPlayers; i++) {
-			if (clientSockets[i] == clientSocket) {
-				message.setPlayerID(i);
-				break;
-			}
+		// any message shows that the client is alive
+		connection.received();
+		if (message.getType() == CardGameMessage.HEARTBEAT) {
+			return;
+		}
+		if (message.getType() == CardGameMessage.RESUME) {
+			// may move the connection to another table
+			resumeSession(connection, (String[]) message.getData());
+			return;
+		}
+		if (table == null) {
+			// a client waiting on a full server that does not resume
+			turnAway(connection);
+			return;
 		}
+		table.lock.lock();
+		try {
+			// updates the playerID, ignoring a client removed in the meantime
+			int playerID = connection.playerID;
+			if (playerID < 0 || table.clientConnections[playerID] != connection) {
+				return;
+			}
+			message.setPlayerID(playerID);
 
-		// parses the message based on it type
-		switch (message.getType()) {
-		case CardGameMessage.JOIN:
-			// adds a player to the game
-			addPlayer(clientSocket, (String) message.getData());
-			break;
-		case CardGameMessage.READY:
-			// marks the specified player as ready for a new game
-			setReadyState(clientSocket);
-			break;
-		case CardGameMessage.MOVE:
-			println("Broadcasts a \"MOVE\" message from "
-					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the MOVE message to all clients
-			broadcastMessage(message);
-			break;
-		case CardGameMessage.MSG:
-			println("Broadcasts a user message from "
-					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the user message to all clients
-			broadcastUserMessage(clientSocket, (String) message.getData());
-			break;
-		default:
-			println("Wrong message type: " + message.getType());
-			// invalid message
-			break;
+			// parses the message based on it type
+			switch (message.getType()) {
+			case CardGameMessage.JOIN:
+				// adds a player to the game
+				addPlayer(table, playerID, (String) message.getData());
+				break;
+			case CardGameMessage.READY:
+				// marks the specified player as ready for a new game
+				setReadyState(table, playerID);
+				break;
+			case CardGameMessage.MOVE:
+				CardGameMove move = (CardGameMove) message.getData();
+				// a move made before the last one was seen is stale
+				if (move.isNext(table.numOfMoves)
+						&& checkMove(table, playerID, move)) {
+					table.numOfMoves++;
+					println("Table " + table.getTableID()
+							+ ": broadcasts a \"MOVE\" message from "
+							+ connection.getRemoteSocketAddress());
+					// broadcast the legal MOVE message to all clients
+					broadcastMessage(table, message);
+				} else {
+					println("Table " + table.getTableID()
+							+ ": rejects an illegal move from "
+							+ connection.getRemoteSocketAddress());
+					// tells only the sender that its move is rejected
+					sendMessage(table, playerID, new CardGameMessage(
+							CardGameMessage.REJECT, playerID, message.getData()));
+				}
+				break;
+			case CardGameMessage.MSG:
+				println("Table " + table.getTableID()
+						+ ": broadcasts a user message from "
+						+ connection.getRemoteSocketAddress());
+				// broadcast the user message to all clients
+				broadcastUserMessage(table, playerID,
+						(String) message.getData());
+				break;
+			case CardGameMessage.QUIT:
+				// the client leaves on purpose, so its slot is not kept
+				removePlayer(table, playerID);
+				connection.close();
+				break;
+			default:
+				println("Wrong message type: " + message.getType());
+				// invalid message
+				break;
+			}
+		} finally {
+			table.lock.unlock();
 		}
 	} // parseMessage
 
 	/**
-	 * Broadcasts the specified message to all clients.
+	 * Broadcasts the specified message to all clients at a table. The message
+	 * is encoded once and the same frame is queued for every client.
 	 * 
+	 * @param table
+	 *            the table whose clients receive the message
 	 * @param message
 	 *            the specified message to be broadcast to all clients
 	 */
-	private synchronized void broadcastMessage(CardGameMessage message) {
-		if (numOfPlayers > 0) {
+	private void broadcastMessage(CardGameTable table,
+			CardGameMessage message) {
+		if (table.numOfPlayers > 0) {
+			ByteBuffer frame;
+			try {
+				frame = codec.encode(message);
+			} catch (IOException ex) {
+				log.log(ServerLog.WARNING,
+						"Error in broadcasting a message to table "
+								+ table.getTableID());
+				if (!silentMode) ex.printStackTrace();
+				return;
+			}
+			// chat messages are not numbered in the sessions, so that they can
+			// be dropped for a slow client without it falling out of step
+			boolean chat = (message.getType() == CardGameMessage.MSG);
 			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] != null && clientOutputStreams[i] != null) {
-					try {
-						clientOutputStreams[i].writeObject(message);
-					} catch (Exception ex) {
-						println("Error in broadcasting a message to the client at "
-								+ clientSockets[i].getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
+				if (table.clientConnections[i] != null) {
+					if (chat) {
+						table.clientConnections[i].sendDroppableFrame(frame);
+					} else {
+						sendFrame(table, i, frame);
 					}
 				}
 			}
@@ -193,167 +681,563 @@ public class CardGameServer {
 	} // broadcastMessage
 
 	/**
-	 * Adds a new socket connection to the server
+	 * Sends the specified message to a single client.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to be added to the server
+	 * @param table
+	 *            the table of the client
+	 * @param playerID
+	 *            the playerID of the client
+	 * @param message
+	 *            the specified message to be sent to the client
 	 */
-	private synchronized void addConnection(Socket clientSocket) {
-		// adds this connection to the server if the server is not full
-		if (numOfPlayers < maxNumOfPlayers) {
-			// locates the first empty slot for the new connection
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == null) {
-					try {
-						// creates an ObjectOutputStream for this client socket
-						ObjectOutputStream oostream = new ObjectOutputStream(
-								clientSocket.getOutputStream());
-
-						clientSockets[i] = clientSocket;
-						clientOutputStreams[i] = oostream;
-						clientNames[i] = null;
-						clientReadyStates[i] = false;
-						numOfPlayers++;
-						println("Establishes a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
-
-						// creates a thread for receiving messages from this
-						// client
-						Thread t = new Thread(new ClientHandler(clientSocket));
-						t.start();
-
-						// sends the player list to the new player
-						oostream.writeObject(new CardGameMessage(
-								CardGameMessage.PLAYER_LIST, i, clientNames));
-					} catch (Exception ex) {
-						println("Error in establishing a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
-					}
-					break;
-				}
-			} // for
-		} else {
-			// Max. no. of players reached
-			println("Server is full: cannot establish a connection with a client at "
-					+ clientSocket.getRemoteSocketAddress());
+	private void sendMessage(CardGameTable table, int playerID,
+			CardGameMessage message) {
+		if (playerID >= 0 && playerID < maxNumOfPlayers
+				&& table.clientConnections[playerID] != null) {
+			try {
+				sendFrame(table, playerID, codec.encode(message));
+			} catch (IOException ex) {
+				log.log(ServerLog.WARNING,
+						"Error in sending a message to the client at "
+								+ table.clientConnections[playerID]
+										.getRemoteSocketAddress());
+				if (!silentMode) ex.printStackTrace();
+			}
+		}
+	} // sendMessage
+
+	/**
+	 * Sends a frame to a client, numbering it in the session of the client
+	 * so that it can be sent again if the client reconnects.
+	 */
+	private void sendFrame(CardGameTable table, int playerID, ByteBuffer frame) {
+		if (table.sessions[playerID] != null) {
+			table.sessions[playerID].add(frame);
+		}
+		table.clientConnections[playerID].sendFrame(frame);
+	}
+
+	/**
+	 * Returns a table with an empty slot for a new connection, creating a new
+	 * table if all tables are full.
+	 * 
+	 * @return a table with an empty slot, or null if the server is full
+	 */
+	private CardGameTable findTable() {
+		// fills the existing tables first so that games can start sooner
+		for (CardGameTable table : tables) {
+			if (table.hasEmptySlot()) {
+				return table;
+			}
+		}
+		if (tables.size() < maxNumOfTables) {
+			CardGameTable table = new CardGameTable(tables.size(),
+					maxNumOfPlayers, createGame());
+			tables.add(table);
+			println("Opens table " + table.getTableID());
+			return table;
+		}
+		return null;
+	} // findTable
 
-			// creates a thread for sending a FULL message to this client, waits
-			// for 1000 milliseconds and closes the socket
-			Thread t = new Thread(new ClientHandler2(clientSocket));
-			t.start();
+	/**
+	 * Adds a new connection to the server
+	 * 
+	 * @param connection
+	 *            the connection to be added to the server
+	 */
+	void addConnection(ClientConnection connection) {
+		if (heartbeatInterval > 0) {
+			timer.schedule(new IdleCheck(connection), heartbeatInterval);
 		}
+		tablesLock.lock();
+		try {
+			// adds this connection to a table if the server is not full
+			CardGameTable table = findTable();
+			if (table != null) {
+				table.lock.lock();
+				try {
+					// locates the first empty slot for the new connection
+					for (int i = 0; i < maxNumOfPlayers; i++) {
+						if (table.clientConnections[i] == null) {
+							connection.table = table;
+							connection.playerID = i;
+							table.clientConnections[i] = connection;
+							table.clientNames[i] = null;
+							table.clientReadyStates[i] = false;
+							table.numOfPlayers++;
+							println("Table " + table.getTableID()
+									+ ": establishes a connection with a client at "
+									+ connection.getRemoteSocketAddress());
 
+							// sends the player list of the table and the token
+							// of the session to the new player
+							connection.send(new CardGameMessage(
+									CardGameMessage.PLAYER_LIST, i,
+									table.clientNames));
+							ClientSession session = new ClientSession(
+									Long.toHexString(random.nextLong()),
+									SESSION_LOG_BYTES);
+							table.sessions[i] = session;
+							sessionTables.put(session.getToken(), table);
+							connection.send(new CardGameMessage(
+									CardGameMessage.SESSION, i,
+									new String[] {
+											session.getToken(),
+											Integer.toString(heartbeatInterval) }));
+							break;
+						}
+					} // for
+				} finally {
+					table.lock.unlock();
+				}
+			} else if (resumeTimeout > 0) {
+				// Max. no. of tables reached and all of them are full; the
+				// connection stays without a table for a while, in case the
+				// client sends a RESUME for a slot that is kept for it
+				final ClientConnection waiting = connection;
+				timer.schedule(new Runnable() {
+					public void run() {
+						turnAway(waiting);
+					}
+				}, FULL_GRACE);
+			} else {
+				turnAway(connection);
+			}
+		} finally {
+			tablesLock.unlock();
+		}
 	} // addConnection
 
+	/**
+	 * Sends a FULL message to a client that has found no slot and closes the
+	 * connection, unless the client has resumed its session or the connection
+	 * has been closed meanwhile.
+	 * 
+	 * @param connection
+	 *            the connection to the client
+	 */
+	private void turnAway(ClientConnection connection) {
+		tablesLock.lock();
+		try {
+			if (connection.table == null && !connection.isClosing()) {
+				// Max. no. of tables reached and all of them are full
+				println("Server is full: cannot establish a connection with a client at "
+						+ connection.getRemoteSocketAddress());
+
+				// sends a FULL message to this client and closes the connection
+				connection.sendAndClose(new CardGameMessage(CardGameMessage.FULL,
+						-1, null));
+			}
+		} finally {
+			tablesLock.unlock();
+		}
+	} // turnAway
+
 	/**
 	 * Removes a connection from the server (possibly due to connection loss).
+	 * The slot of a player who has joined the game is kept for a while, so
+	 * that the client can reconnect and resume its session.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection being removed from the server
+	 * @param table
+	 *            the table of the connection
+	 * @param connection
+	 *            the connection being removed from the server
 	 */
-	private synchronized void removeConnection(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String name = clientNames[i];
+	void removeConnection(CardGameTable table, ClientConnection connection) {
+		// a client turned away by a full server has no table
+		if (table == null) {
+			return;
+		}
+		table.lock.lock();
+		try {
+			// the slot of the connection, unless it has been removed already
+			int i = connection.playerID;
+			if (i >= 0 && table.clientConnections[i] == connection) {
+				if (resumeTimeout > 0 && table.clientNames[i] != null) {
+					holdSlot(table, i);
+				} else {
+					removePlayer(table, i);
+				}
+			}
+		} finally {
+			table.lock.unlock();
+		}
+	} // removeConnection
+
+	/**
+	 * Frees the slot of a player, stops the game in progress and tells the
+	 * other players. Called with the lock of the table held.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param i
+	 *            the playerID of the player leaving the game
+	 */
+	private void removePlayer(CardGameTable table, int i) {
+		ClientConnection connection = table.clientConnections[i];
+		String name = table.clientNames[i];
+
+		table.clientConnections[i] = null;
+		table.clientNames[i] = null;
+		if (table.sessions[i] != null) {
+			sessionTables.remove(table.sessions[i].getToken());
+			table.sessions[i] = null;
+		}
+		if (table.clientReadyStates[i]) {
+			table.clientReadyStates[i] = false;
+			table.numOfReadyPlayers--;
+		}
+		table.numOfPlayers--;
+		connection.playerID = -1;
+
+		println("Table " + table.getTableID() + ": " + name + " ("
+				+ connection.getRemoteSocketAddress()
+				+ ") leaves the game.");
 
-					clientSockets[i] = null;
-					clientOutputStreams[i] = null;
-					clientNames[i] = null;
-					clientReadyStates[i] = false;
-					numOfPlayers--;
+		// the game in progress cannot go on without this player
+		stopGame(table);
 
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") leaves the game.");
+		String remoteAddress = connection.getRemoteSocketAddress()
+				.toString();
 
-					String remoteAddress = clientSocket
-							.getRemoteSocketAddress().toString();
+		// broadcasts a message about the leaving of this player
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.QUIT, i,
+				remoteAddress));
+	} // removePlayer
 
-					// broadcasts a message about the leaving of this player
-					broadcastMessage(new CardGameMessage(CardGameMessage.QUIT,
-							i, remoteAddress));
-					break;
+	/**
+	 * Keeps the slot of a player whose connection is lost for resumeTimeout
+	 * milliseconds. The game waits for the player meanwhile, and the other
+	 * players are not told unless the time is up. Called with the lock of the
+	 * table held.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param i
+	 *            the playerID of the player who lost the connection
+	 */
+	private void holdSlot(final CardGameTable table, final int i) {
+		ClientConnection connection = table.clientConnections[i];
+		final HeldConnection held = new HeldConnection(
+				connection.getRemoteSocketAddress());
+		held.table = table;
+		held.playerID = i;
+		table.clientConnections[i] = held;
+		connection.playerID = -1;
+		held.expiry = timer.schedule(new Runnable() {
+			public void run() {
+				table.lock.lock();
+				try {
+					// unless the session has been resumed meanwhile
+					if (table.clientConnections[i] == held) {
+						removePlayer(table, i);
+					}
+				} finally {
+					table.lock.unlock();
 				}
 			}
+		}, resumeTimeout);
+
+		println("Table " + table.getTableID() + ": " + table.clientNames[i]
+				+ " (" + held.getRemoteSocketAddress()
+				+ ") loses the connection; the slot is kept for "
+				+ resumeTimeout + " ms.");
+	} // holdSlot
+
+	/**
+	 * Gives a client that reconnected its slot back, and sends it the messages
+	 * it has not received, or a snapshot of the game at its table if that
+	 * takes fewer bytes or the messages are no longer kept. The snapshot is
+	 * built from the state of the game the server keeps, so the messages
+	 * after it are simply the next ones. The slot found for the new connection is freed
+	 * without telling anyone, as the client has not joined with it; on a full
+	 * server the connection has no slot, and is sent FULL if the session
+	 * cannot be resumed. The session is taken over even if the server has not
+	 * noticed yet that the old connection is lost.
+	 * 
+	 * @param connection
+	 *            the new connection of the client
+	 * @param data
+	 *            the token of the session and the number of messages the
+	 *            client received in it
+	 */
+	private void resumeSession(ClientConnection connection, String[] data) {
+		CardGameTable newTable = connection.table;
+		CardGameTable table = null;
+		long numReceived = 0;
+		// a missing token or a malformed count fails like an expired session
+		if (data != null && data.length == 2 && data[0] != null) {
+			try {
+				numReceived = Long.parseLong(data[1]);
+				table = sessionTables.get(data[0]);
+			} catch (NumberFormatException ex) {
+				// the session is not looked up
+			}
 		}
-	} // removeConnection
+		if (table == null) {
+			println("Cannot resume an expired session of the client at "
+					+ connection.getRemoteSocketAddress());
+			connection.send(new CardGameMessage(CardGameMessage.RESUME, -1,
+					null));
+			if (newTable == null) {
+				turnAway(connection);
+			}
+			return;
+		}
+		// takes the locks of both tables in the order of their ids, so that
+		// two clients resuming the other way round do not deadlock; a client
+		// without a table is guarded by the lock of the tables instead, taken
+		// first as in addConnection
+		CardGameTable other = (newTable != null) ? newTable : table;
+		CardGameTable first = (table.getTableID() <= other.getTableID()) ? table
+				: other;
+		CardGameTable second = (first == table) ? other : table;
+		if (newTable == null) {
+			tablesLock.lock();
+		}
+		first.lock.lock();
+		second.lock.lock();
+		try {
+			// only a client that has not joined with its new slot, or that
+			// has not been turned away by a full server, may resume
+			int j = connection.playerID;
+			if (newTable == null ? connection.isClosing() : (j < 0
+					|| newTable.clientConnections[j] != connection
+					|| newTable.clientNames[j] != null)) {
+				println("Cannot resume a session for the client at "
+						+ connection.getRemoteSocketAddress()
+						+ ", which has joined the game or lost its slot");
+				connection.send(new CardGameMessage(CardGameMessage.RESUME,
+						-1, null));
+				return;
+			}
+			int i = -1;
+			for (int k = 0; k < maxNumOfPlayers; k++) {
+				if (table.sessions[k] != null
+						&& table.sessions[k].getToken().equals(data[0])) {
+					i = k;
+				}
+			}
+			ByteBuffer[] missed = (i >= 0) ? table.sessions[i]
+					.getFramesAfter(numReceived) : null;
+			// a snapshot of the table instead, if the messages missed are no
+			// longer kept or take more bytes
+			ByteBuffer snapshot = (i >= 0) ? encodeSnapshot(table, i) : null;
+			if (snapshot != null && missed != null
+					&& sizeOf(missed) <= snapshot.remaining()) {
+				snapshot = null;
+			}
+			if (missed == null && snapshot == null) {
+				println("Cannot resume the session of the client at "
+						+ connection.getRemoteSocketAddress()
+						+ ", as it missed too many messages");
+				connection.send(new CardGameMessage(CardGameMessage.RESUME,
+						-1, null));
+				if (newTable == null) {
+					turnAway(connection);
+				}
+				return;
+			}
+
+			// frees the new slot, if any
+			if (newTable != null) {
+				newTable.clientConnections[j] = null;
+				sessionTables.remove(newTable.sessions[j].getToken());
+				newTable.sessions[j] = null;
+				newTable.numOfPlayers--;
+			}
+
+			// takes the slot over from the old connection
+			ClientConnection old = table.clientConnections[i];
+			old.playerID = -1;
+			old.close();
+			connection.table = table;
+			connection.playerID = i;
+			table.clientConnections[i] = connection;
+			if (snapshot != null) {
+				println("Table " + table.getTableID() + ": "
+						+ table.clientNames[i] + " ("
+						+ connection.getRemoteSocketAddress()
+						+ ") resumes the game from a snapshot of "
+						+ snapshot.remaining() + " bytes.");
+
+				// the answer carries the snapshot in place of the messages
+				// missed
+				connection.sendFrame(snapshot);
+			} else {
+				println("Table " + table.getTableID() + ": "
+						+ table.clientNames[i] + " ("
+						+ connection.getRemoteSocketAddress()
+						+ ") resumes the game after missing " + missed.length
+						+ " messages.");
+
+				// the messages missed follow the answer, before any new one
+				connection.send(new CardGameMessage(CardGameMessage.RESUME, i,
+						null));
+				for (int k = 0; k < missed.length; k++) {
+					connection.sendFrame(missed[k]);
+				}
+			}
+		} finally {
+			second.lock.unlock();
+			first.lock.unlock();
+			if (newTable == null) {
+				tablesLock.unlock();
+			}
+		}
+	} // resumeSession
+
+	/**
+	 * Encodes the answer to a client resuming its session that carries a
+	 * snapshot of the game at its table. Called with the lock of the table
+	 * held.
+	 *
+	 * @param table
+	 *            the table of the client
+	 * @param i
+	 *            the playerID of the client
+	 * @return the frame of the RESUME message, or null if the server keeps no
+	 *         state of the game
+	 */
+	private ByteBuffer encodeSnapshot(CardGameTable table, int i) {
+		CardGame game = table.getGame();
+		if (game == null) {
+			return null;
+		}
+		ArrayList<CardGamePlayer> playerList = game.getPlayerList();
+		// the client is not told the cards of the others, only how many
+		int[] numOfCards = new int[maxNumOfPlayers];
+		for (int k = 0; k < maxNumOfPlayers; k++) {
+			numOfCards[k] = playerList.get(k).getNumOfCards();
+		}
+		ArrayList<Hand> handsOnTable = game.getHandsOnTable();
+		Hand lastHand = handsOnTable.isEmpty() ? null : handsOnTable
+				.get(handsOnTable.size() - 1);
+		CardGameSnapshot snapshot = new CardGameSnapshot(
+				table.sessions[i].getNumOfFrames(), table.clientNames,
+				table.clientReadyStates, playerList.get(i).getCardsInHand(),
+				numOfCards, game.getCurrentPlayerIdx(),
+				(lastHand == null) ? -1 : playerList.indexOf(lastHand
+						.getPlayer()), lastHand, table.numOfMoves);
+		try {
+			// encoded at once, while the table cannot change
+			return codec.encode(new CardGameMessage(CardGameMessage.RESUME, i,
+					snapshot));
+		} catch (IOException ex) {
+			if (!silentMode) ex.printStackTrace();
+			return null;
+		}
+	} // encodeSnapshot
+
+	/**
+	 * Returns the number of bytes of the specified frames.
+	 */
+	private static int sizeOf(ByteBuffer[] frames) {
+		int size = 0;
+		for (int k = 0; k < frames.length; k++) {
+			size += frames[k].remaining();
+		}
+		return size;
+	}
 
 	/**
 	 * adds a player to the game.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the player who is joining the game
+	 * @param table
+	 *            the table of the player
+	 * @param playerID
+	 *            the playerID of the player who is joining the game
 	 * @param name
 	 *            the name of the player who is joining the game
 	 */
-	private synchronized void addPlayer(Socket clientSocket, String name) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					// updates the name of the new player
-					clientNames[i] = name;
+	private void addPlayer(CardGameTable table, int playerID, String name) {
+		// updates the name of the new player
+		table.clientNames[playerID] = name;
 
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") joins the game.");
+		println("Table " + table.getTableID() + ": " + name + " ("
+				+ table.clientConnections[playerID].getRemoteSocketAddress()
+				+ ") joins the game.");
 
-					// broadcasts a message about this player joining the game
-					broadcastMessage(new CardGameMessage(CardGameMessage.JOIN,
-							i, name));
-					break;
-				}
-			}
-		}
+		// broadcasts a message about this player joining the game
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.JOIN,
+				playerID, name));
 	} // addPlayer
 
 	/**
 	 * Marks the specified player as ready for a new game.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the player who becomes ready for a
-	 *            new game
+	 * @param table
+	 *            the table of the player
+	 * @param playerID
+	 *            the playerID of the player who becomes ready for a new game
 	 */
-	private synchronized void setReadyState(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					clientReadyStates[i] = true;
-					println(clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress()
-							+ " ) is ready for the next game.");
-					broadcastMessage(new CardGameMessage(CardGameMessage.READY,
-							i, null));
-					break;
-				}
-			}
+	private void setReadyState(CardGameTable table, int playerID) {
+		if (!table.clientReadyStates[playerID]) {
+			table.clientReadyStates[playerID] = true;
+			table.numOfReadyPlayers++;
 		}
+		println("Table " + table.getTableID() + ": "
+				+ table.clientNames[playerID] + " ("
+				+ table.clientConnections[playerID].getRemoteSocketAddress()
+				+ " ) is ready for the next game.");
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.READY,
+				playerID, null));
 
 		// checks if all players are ready
-		if (numOfPlayers == maxNumOfPlayers) {
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientReadyStates[i] == false) {
-					// returns if any of the players is not ready
-					return;
-				}
-			}
-
+		if (table.numOfPlayers == maxNumOfPlayers
+				&& table.numOfReadyPlayers == maxNumOfPlayers) {
 			// resets the ready states of all the players for the next game
 			for (int i = 0; i < maxNumOfPlayers; i++) {
-				clientReadyStates[i] = false;
+				table.clientReadyStates[i] = false;
 			}
+			table.numOfReadyPlayers = 0;
 
 			// creates a new deck, shuffles the deck, and starts a new game
 			Deck deck = createDeck();
 			deck.shuffle();
-			println("All players are ready. Game starts.");
-			broadcastMessage(new CardGameMessage(CardGameMessage.START, -1,
-					deck));
+			println("Table " + table.getTableID()
+					+ ": all players are ready. Game starts.");
+			startGame(table, deck);
+			table.numOfMoves = 0;
+			// every player is sent only the cards dealt to it
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				sendMessage(table, i, createStartMessage(table, deck, i));
+			}
 		}
 	}
 
+	/**
+	 * Creates the START message of a player, with only the cards dealt to
+	 * it; every other player is dealt as many. The cards are those held in
+	 * the game kept at the table, or the share of the deck of the player if
+	 * the server keeps no game state.
+	 * 
+	 * @param table
+	 *            the table where the game starts
+	 * @param deck
+	 *            the shuffled deck of the game
+	 * @param i
+	 *            the playerID of the player
+	 * @return the START message, whose playerID specifies the player who makes
+	 *         the first move, or -1 if unknown
+	 */
+	private CardGameMessage createStartMessage(CardGameTable table, Deck deck,
+			int i) {
+		CardGame game = table.getGame();
+		if (game != null) {
+			return new CardGameMessage(CardGameMessage.START,
+					game.getCurrentPlayerIdx(), game.getPlayerList().get(i)
+							.getCardsInHand());
+		}
+		int numOfCards = deck.size() / maxNumOfPlayers;
+		CardList cards = new CardList();
+		for (int j = 0; j < numOfCards; j++) {
+			cards.addCard(deck.getCard(i * numOfCards + j));
+		}
+		return new CardGameMessage(CardGameMessage.START, -1, cards);
+	} // createStartMessage
+
 	/**
 	 * Creates and returns an instance of the Deck class. Overrides this method
 	 * if a different type of deck is needed.
@@ -364,58 +1248,331 @@ public class CardGameServer {
 		return new Deck();
 	}
 
-	private synchronized void broadcastUserMessage(Socket clientSocket,
+	/**
+	 * Creates and returns the state of the game played at a new table.
+	 * Overrides this method to keep the state of the games on the server; by
+	 * default the server keeps no game state.
+	 * 
+	 * @return the state of a new game, or null if the server keeps none
+	 */
+	public CardGame createGame() {
+		return null;
+	}
+
+	/**
+	 * Starts a new game at a table with the specified deck. Overrides this
+	 * method to keep the state of the game on the server. Called with the lock
+	 * of the table held.
+	 * 
+	 * @param table
+	 *            the table where the game starts
+	 * @param deck
+	 *            the shuffled deck dealt to the players at the table
+	 */
+	protected void startGame(CardGameTable table, Deck deck) {
+	}
+
+	/**
+	 * Stops the game in progress at a table, e.g. when a player leaves.
+	 * Overrides this method to keep the state of the game on the server.
+	 * Called with the lock of the table held.
+	 * 
+	 * @param table
+	 *            the table where the game stops
+	 */
+	protected void stopGame(CardGameTable table) {
+	}
+
+	/**
+	 * Checks a move made by a player and updates the state of the game if it
+	 * is legal. Only legal moves are broadcast to the clients. Overrides this
+	 * method to validate moves on the server; by default every move is legal.
+	 * Called with the lock of the table held.
+	 * 
+	 * @param table
+	 *            the table of the player
+	 * @param playerID
+	 *            the playerID of the player who makes the move
+	 * @param move
+	 *            the cards played by the player, with the sequence number
+	 *            checked already
+	 * @return true if the move is legal; false otherwise
+	 */
+	protected boolean checkMove(CardGameTable table, int playerID,
+			CardGameMove move) {
+		return true;
+	}
+
+	private void broadcastUserMessage(CardGameTable table, int playerID,
 			String msg) {
-		if (numOfPlayers > 0) {
-			// locates the client in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String longMsg = clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress() + "): "
-							+ msg;
-					broadcastMessage(new CardGameMessage(CardGameMessage.MSG,
-							i, longMsg));
-					break;
-				}
+		String longMsg = table.clientNames[playerID] + " ("
+				+ table.clientConnections[playerID].getRemoteSocketAddress()
+				+ "): " + msg;
+		broadcastMessage(table, new CardGameMessage(CardGameMessage.MSG,
+				playerID, longMsg));
+	}
+
+	/**
+	 * Starts a thread running the specified task, which is a virtual thread
+	 * in the VIRTUAL_THREAD mode and a platform thread otherwise.
+	 * 
+	 * @param task
+	 *            the task to be run
+	 */
+	private void startThread(Runnable task) {
+		if (ioMode == VIRTUAL_THREAD) {
+			try {
+				startVirtualThread.invoke(null, task);
+				return;
+			} catch (Exception ex) {
+				log.log(ServerLog.ERROR, "Error in starting a virtual thread");
+				if (!silentMode) ex.printStackTrace();
 			}
 		}
-	}
+		Thread t = new Thread(task);
+		t.start();
+	} // startThread
 
 	/**
-	 * Prints the specified message to the text area.
+	 * Starts a writer task, on a virtual thread in the VIRTUAL_THREAD mode and
+	 * on a pooled platform thread otherwise.
+	 * 
+	 * @param task
+	 *            the writer task to be run
+	 */
+	private void startWriter(Runnable task) {
+		if (ioMode == VIRTUAL_THREAD) {
+			startThread(task);
+		} else {
+			writerPool.execute(task);
+		}
+	} // startWriter
+
+	/**
+	 * Logs the specified message at the INFO level, to be printed to the text
+	 * area.
 	 * 
 	 * @param msg
 	 */
-	private void println(String msg) {
-		textArea.append(msg + "\n");
-		textArea.setCaretPosition(textArea.getDocument().getLength());
+	void println(String msg) {
+		log.log(ServerLog.INFO, msg);
 	}
 
 	/**
-	 * This inner class is used for receiving incoming messages from a client
+	 * This inner class is used to model the slot of a client that lost its
+	 * connection, while it is kept for the client to resume its session.
+	 * Nothing is written to it; the session of the client keeps the frames.
 	 * 
-	 * @author Kenneth Wong
+	 * @author Darren Chang JR
 	 *
 	 */
-	private class ClientHandler implements Runnable {
+	private class HeldConnection extends ClientConnection {
+		private final String remoteAddress; // address of the lost connection
+		private TimerWheel.Timeout expiry; // the freeing of the slot
+
+		/**
+		 * Creates and returns an instance of the HeldConnection class.
+		 * 
+		 * @param remoteAddress
+		 *            the remote address of the lost connection
+		 */
+		public HeldConnection(String remoteAddress) {
+			super(CardGameServer.this);
+			this.remoteAddress = remoteAddress;
+		} // constructor
+
+		public void send(CardGameMessage message) {
+		}
+
+		public void sendAndClose(CardGameMessage message) {
+		}
+
+		public void sendFrame(ByteBuffer frame) {
+		}
+
+		public void sendDroppableFrame(ByteBuffer frame) {
+		}
+
+		protected void scheduleWrite() {
+		}
+
+		public void close() {
+			// the session is resumed, so the slot is not freed
+			if (expiry != null) {
+				expiry.cancel();
+			}
+		}
+
+		public String getRemoteSocketAddress() {
+			return remoteAddress;
+		}
+	} // HeldConnection
+
+	/**
+	 * This inner class is used to check a connection for idleness every
+	 * heartbeatInterval milliseconds on the timer, until the connection is
+	 * closed. A connection lost without being closed is closed here, which
+	 * unblocks its reader and writer and hands its slot to removeConnection.
+	 * 
+	 * @author Darren Chang JR
+	 *
+	 */
+	private class IdleCheck implements Runnable {
+		private final ClientConnection connection; // connection checked
+
+		/**
+		 * Creates and returns an instance of the IdleCheck class.
+		 * 
+		 * @param connection
+		 *            the connection to be checked
+		 */
+		public IdleCheck(ClientConnection connection) {
+			this.connection = connection;
+		} // constructor
+
+		// implementation of method from the Runnable interface
+		public void run() {
+			if (connection.isClosed()) {
+				return;
+			}
+			long now = System.currentTimeMillis();
+			long readIdle = now - connection.getLastReadTime();
+			long writeWaitingSince = connection.getWriteWaitingSince();
+			if (readIdle >= readTimeout) {
+				numOfReadIdleClosed++;
+				log.log(ServerLog.WARNING,
+						"Closes the connection to the client at "
+								+ connection.getRemoteSocketAddress()
+								+ ", silent for " + readIdle + " ms");
+				connection.close();
+				return;
+			}
+			if (writeWaitingSince > 0
+					&& now - writeWaitingSince >= writeTimeout) {
+				numOfWriteIdleClosed++;
+				log.log(ServerLog.WARNING,
+						"Closes the connection to the client at "
+								+ connection.getRemoteSocketAddress()
+								+ ", not reading for "
+								+ (now - writeWaitingSince) + " ms");
+				connection.close();
+				return;
+			}
+			if (readIdle >= heartbeatInterval
+					|| now - connection.getLastSendTime() >= heartbeatInterval) {
+				// not numbered in the session, as the client does not count it
+				connection.send(new CardGameMessage(CardGameMessage.HEARTBEAT,
+						-1, null));
+			}
+			timer.schedule(this, heartbeatInterval);
+		} // run
+	} // IdleCheck
+
+	/**
+	 * This inner class is used to model a connection served by a thread of its
+	 * own, which blocks on the socket of the client, and by writer tasks that
+	 * drain its queue of outgoing messages.
+	 * 
+	 * @author Darren Chang JR
+	 *
+	 */
+	private class SocketConnection extends ClientConnection {
 		private Socket clientSocket; // socket connection to the client
-		private ObjectInputStream oistream; // ObjectInputStream of the client
+		private OutputStream ostream; // OutputStream of the client
 
 		/**
-		 * Creates and returns an instance of the ClientHandler class.
+		 * Creates and returns an instance of the SocketConnection class.
 		 * 
 		 * @param clientSocket
 		 *            the socket connection to the client
+		 * @throws IOException
+		 *             if the socket is already closed
 		 */
-		public ClientHandler(Socket clientSocket) {
+		public SocketConnection(Socket clientSocket) throws IOException {
+			super(CardGameServer.this);
 			this.clientSocket = clientSocket;
+			clientSocket.setTcpNoDelay(true);
+			// unbuffered, as every batch of frames is written with a single call
+			ostream = clientSocket.getOutputStream();
+		} // constructor
+
+		protected void scheduleWrite() {
+			startWriter(new ClientHandler2(this));
+		}
+
+		/**
+		 * Writes a batch of frames to the client with a single call.
+		 * 
+		 * @param frames
+		 *            the frames to be written
+		 * @throws IOException
+		 *             if the frames cannot be written
+		 */
+		void write(ByteBuffer[] frames) throws IOException {
+			if (frames.length == 1) {
+				ostream.write(frames[0].array(), frames[0].position(),
+						frames[0].remaining());
+				return;
+			}
+			int size = 0;
+			for (int i = 0; i < frames.length; i++) {
+				size += frames[i].remaining();
+			}
+			byte[] batch = new byte[size];
+			int offset = 0;
+			for (int i = 0; i < frames.length; i++) {
+				int length = frames[i].remaining();
+				frames[i].get(batch, offset, length);
+				offset += length;
+			}
+			ostream.write(batch);
+		}
+
+		public void close() {
+			closeOutbound();
+			try {
+				clientSocket.close();
+			} catch (Exception ex) {
+				log.log(ServerLog.WARNING,
+						"Error in closing the client socket at "
+								+ getRemoteSocketAddress());
+				if (!silentMode) ex.printStackTrace();
+			}
+		}
+
+		public String getRemoteSocketAddress() {
+			return String.valueOf(clientSocket.getRemoteSocketAddress());
+		}
+	} // SocketConnection
+
+	/**
+	 * This inner class is used for receiving incoming messages from a client
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class ClientHandler implements Runnable {
+		private SocketConnection connection; // connection to the client
+		private DataInputStream distream; // DataInputStream of the client
+
+		/**
+		 * Creates and returns an instance of the ClientHandler class.
+		 * 
+		 * @param connection
+		 *            the connection to the client
+		 */
+		public ClientHandler(SocketConnection connection) {
+			this.connection = connection;
 			try {
-				// creates an ObjectInputStream and chains it to the InputStream
+				// creates a DataInputStream and chains it to the InputStream
 				// of the client socket
-				oistream = new ObjectInputStream(clientSocket.getInputStream());
+				distream = new DataInputStream(new BufferedInputStream(
+						connection.clientSocket.getInputStream(),
+						MessageFrame.READ_BUFFER_SIZE));
 			} catch (Exception ex) {
-				println("Error in creating an ObjectInputStream for the client at "
-						+ clientSocket.getRemoteSocketAddress());
+				log.log(ServerLog.WARNING,
+						"Error in creating a DataInputStream for the client at "
+								+ connection.getRemoteSocketAddress());
 				if (!silentMode) ex.printStackTrace();
 			}
 		} // constructor
@@ -425,94 +1582,69 @@ public class CardGameServer {
 			CardGameMessage message;
 			try {
 				// waits for messages from the client
-				while ((message = (CardGameMessage) oistream.readObject()) != null) {
-					println("Message received from "
-							+ clientSocket.getRemoteSocketAddress());
-					parseMessage(clientSocket, message);
+				while ((message = MessageFrame.read(distream, codec)) != null) {
+					if (log.isLoggable(ServerLog.DEBUG)) {
+						log.log(ServerLog.DEBUG, "Message received from "
+								+ connection.getRemoteSocketAddress());
+					}
+					parseMessage(connection.getTable(), connection, message);
 				} // close while
 			} catch (Exception ex) {
-				println("Error in receiving messages from the client at "
-						+ clientSocket.getRemoteSocketAddress());
+				log.log(ServerLog.WARNING,
+						"Error in receiving messages from the client at "
+								+ connection.getRemoteSocketAddress());
 				if (!silentMode) ex.printStackTrace();
 				// possible connection loss, removes the connection
-				removeConnection(clientSocket);
+				removeConnection(connection.getTable(), connection);
+				connection.close();
 			}
 		} // run
 	} // ClientHandler
 
+	/**
+	 * This inner class is used for sending the queued messages to a client. It
+	 * runs while the queue of the client has messages, so that a slow client
+	 * only ever blocks its own writer.
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
 	private class ClientHandler2 implements Runnable {
-		private Socket clientSocket; // socket connection to the client
+		private SocketConnection connection; // connection to the client
 
 		/**
 		 * Creates and returns an instance of the ClientHandler2 class.
 		 * 
-		 * @param clientSocket
-		 *            the socket connection to the client
+		 * @param connection
+		 *            the connection to the client
 		 */
-		public ClientHandler2(Socket clientSocket) {
-			this.clientSocket = clientSocket;
+		public ClientHandler2(SocketConnection connection) {
+			this.connection = connection;
 		} // constructor
 
 		// implementation of method from the Runnable interface
 		public void run() {
 			try {
-				// creates an ObjectOutputStream and chains it to the
-				// OutputStream
-				// of the client socket
-				ObjectOutputStream oostream = new ObjectOutputStream(
-						clientSocket.getOutputStream());
-				// sends a FULL message to the client
-				oostream.writeObject(new CardGameMessage(CardGameMessage.FULL,
-						-1, null));
-				oostream.flush();
-			} catch (Exception ex) {
-				println("Error in sending a FULL message to the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
-			}
-
-			// sleeps for 1000 milliseconds before closing the socket
-			try {
-				Thread.sleep(1000);
+				// sends everything queued so far in one batch, until the
+				// queue is empty
+				ByteBuffer[] frames;
+				while ((frames = connection.takeFrames()) != null) {
+					connection.write(frames);
+				}
 			} catch (Exception ex) {
-				println("Error in sleeping before closing the client socket at "
-						+ clientSocket.getRemoteSocketAddress());
+				log.log(ServerLog.WARNING,
+						"Error in sending messages to the client at "
+								+ connection.getRemoteSocketAddress());
 				if (!silentMode) ex.printStackTrace();
+				// the reading thread removes the connection
+				connection.close();
+				return;
 			}
 
-			// closes the socket
-			try {
-				clientSocket.close();
-			} catch (Exception ex) {
-				println("Error in closing the client socket at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+			// closes the socket after the last message, e.g. FULL
+			if (connection.isClosing()) {
+				connection.close();
 			}
 		} // run
 	} // ClientHandler2
-
-	/**
-	 * This inner class is used for handling the Clear menu
-	 * 
-	 * @author Kenneth Wong
-	 *
-	 */
-	private class ClearMenuItemListener implements ActionListener {
-		public void actionPerformed(ActionEvent e) {
-			textArea.setText("");
-		}
-	} // ClearMenuItemListener
-
-	/**
-	 * This inner class is used for handling the Quit menu
-	 * 
-	 * @author Kenneth Wong
-	 *
-	 */
-	private class QuitMenuItemListener implements ActionListener {
-		public void actionPerformed(ActionEvent e) {
-			frame.dispose();
-			System.exit(0);
-		}
-	} // QuitMenuItemListener
 }
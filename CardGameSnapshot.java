@@ -0,0 +1,172 @@
+/**
+ * This class is used to model a snapshot of the game at a table of a card game
+ * server, sent to a client resuming its session in place of the messages it
+ * missed: the names and ready states of the players, the cards of the player
+ * of the client and how many cards the others hold, the last hand on the
+ * table, the current player and the number of moves made. It also tells how
+ * many messages of the session it stands for, so that the client can go on
+ * numbering the messages that follow.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class CardGameSnapshot {
+	// the number of messages of the session sent before the snapshot
+	private final long numOfMessages;
+	// the names of the players, null for an empty slot
+	private final String[] names;
+	// the ready states of the players
+	private final boolean[] readyStates;
+	// the cards of the player of the client
+	private final CardList hand;
+	// the number of cards held by each player
+	private final int[] numOfCards;
+	// the index of the current player, or -1 if no game is in progress
+	private final int currentPlayerIdx;
+	// the index of the player of the last hand on the table, or -1 if the
+	// table is empty
+	private final int lastHandPlayerIdx;
+	// the cards of the last hand on the table, or null if the table is empty
+	private final CardList lastHand;
+	// the number of moves made in the game
+	private final int numOfMoves;
+
+	/**
+	 * Creates and returns an instance of the CardGameSnapshot class.
+	 *
+	 * @param numOfMessages
+	 *            the number of messages of the session sent before the
+	 *            snapshot
+	 * @param names
+	 *            the names of the players, null for an empty slot
+	 * @param readyStates
+	 *            the ready states of the players
+	 * @param hand
+	 *            the cards of the player of the client
+	 * @param numOfCards
+	 *            the number of cards held by each player
+	 * @param currentPlayerIdx
+	 *            the index of the current player, or -1 if no game is in
+	 *            progress
+	 * @param lastHandPlayerIdx
+	 *            the index of the player of the last hand on the table, or -1
+	 *            if the table is empty
+	 * @param lastHand
+	 *            the cards of the last hand on the table, or null if the table
+	 *            is empty
+	 * @param numOfMoves
+	 *            the number of moves made in the game
+	 */
+	public CardGameSnapshot(long numOfMessages, String[] names,
+			boolean[] readyStates, CardList hand, int[] numOfCards,
+			int currentPlayerIdx, int lastHandPlayerIdx, CardList lastHand,
+			int numOfMoves) {
+		this.numOfMessages = numOfMessages;
+		this.names = names;
+		this.readyStates = readyStates;
+		this.hand = hand;
+		this.numOfCards = numOfCards;
+		this.currentPlayerIdx = currentPlayerIdx;
+		this.lastHandPlayerIdx = lastHandPlayerIdx;
+		this.lastHand = lastHand;
+		this.numOfMoves = numOfMoves;
+	}
+
+	/**
+	 * Returns the number of messages of the session sent before the snapshot.
+	 *
+	 * @return the number of messages the snapshot stands for
+	 */
+	public long getNumOfMessages() {
+		return numOfMessages;
+	}
+
+	/**
+	 * Returns the number of players in the snapshot.
+	 *
+	 * @return the number of players
+	 */
+	public int getNumOfPlayers() {
+		return names.length;
+	}
+
+	/**
+	 * Returns the name of a player.
+	 *
+	 * @param i
+	 *            the index of the player
+	 * @return the name of the player, or null for an empty slot
+	 */
+	public String getName(int i) {
+		return names[i];
+	}
+
+	/**
+	 * Returns true if a player is ready for a new game.
+	 *
+	 * @param i
+	 *            the index of the player
+	 * @return the ready state of the player
+	 */
+	public boolean isReady(int i) {
+		return readyStates[i];
+	}
+
+	/**
+	 * Returns the cards of the player of the client.
+	 *
+	 * @return the cards of the player
+	 */
+	public CardList getHand() {
+		return hand;
+	}
+
+	/**
+	 * Returns the number of cards held by a player.
+	 *
+	 * @param i
+	 *            the index of the player
+	 * @return the number of cards of the player
+	 */
+	public int getNumOfCards(int i) {
+		return numOfCards[i];
+	}
+
+	/**
+	 * Returns the index of the current player.
+	 *
+	 * @return the index of the current player, or -1 if no game is in
+	 *         progress
+	 */
+	public int getCurrentPlayerIdx() {
+		return currentPlayerIdx;
+	}
+
+	/**
+	 * Returns the index of the player of the last hand on the table.
+	 *
+	 * @return the index of the player, or -1 if the table is empty
+	 */
+	public int getLastHandPlayerIdx() {
+		return lastHandPlayerIdx;
+	}
+
+	/**
+	 * Returns the cards of the last hand on the table.
+	 *
+	 * @return the cards of the last hand, or null if the table is empty
+	 */
+	public CardList getLastHand() {
+		return lastHand;
+	}
+
+	/**
+	 * Returns the number of moves made in the game, which is the sequence
+	 * number of the next move.
+	 *
+	 * @return the number of moves made
+	 */
+	public int getNumOfMoves() {
+		return numOfMoves;
+	}
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is used to model a table of a card game server. Each table has its
+ * own player slots, ready states and game, guarded by a lock of its own, so
+ * that one server can host many independent games that do not wait for each
+ * other.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class CardGameTable {
+	// The id of this table
+	private final int tableID;
+	// The maximum number of players at this table
+	private final int maxNumOfPlayers;
+	// Array for holding connections to the clients
+	final ClientConnection[] clientConnections;
+	// Array for holding player names of the clients
+	final String[] clientNames;
+	// Array for holding ready states of the clients
+	final boolean[] clientReadyStates;
+	// Array for holding the sessions of the clients, which keep the latest
+	// frames sent to them
+	final ClientSession[] sessions;
+	// number of current players; written under the lock, and read without it
+	// when looking for a table with an empty slot
+	volatile int numOfPlayers = 0;
+	// number of current players who are ready for a new game
+	int numOfReadyPlayers = 0;
+	// number of moves made in the game in progress, which is the sequence
+	// number the next move must carry
+	int numOfMoves = 0;
+	// lock guarding the slots and the game of this table
+	final ReentrantLock lock = new ReentrantLock();
+	// the state of the game played at this table, if kept by the server
+	private final CardGame game;
+
+	/**
+	 * Creates and returns an instance of the CardGameTable class.
+	 * 
+	 * @param tableID
+	 *            the id of this table
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players at this table
+	 * @param game
+	 *            the state of the game played at this table, or null if the
+	 *            server does not keep it
+	 */
+	public CardGameTable(int tableID, int maxNumOfPlayers, CardGame game) {
+		this.tableID = tableID;
+		this.maxNumOfPlayers = maxNumOfPlayers;
+		this.game = game;
+
+		// creates arrays for holding client connections, player names, ready
+		// states and sessions
+		clientConnections = new ClientConnection[maxNumOfPlayers];
+		clientNames = new String[maxNumOfPlayers];
+		clientReadyStates = new boolean[maxNumOfPlayers];
+		sessions = new ClientSession[maxNumOfPlayers];
+	}
+
+	/**
+	 * Returns the id of this table.
+	 * 
+	 * @return the id of this table
+	 */
+	public int getTableID() {
+		return tableID;
+	}
+
+	/**
+	 * Returns the maximum number of players at this table.
+	 * 
+	 * @return the maximum number of players at this table
+	 */
+	public int getMaxNumOfPlayers() {
+		return maxNumOfPlayers;
+	}
+
+	/**
+	 * Returns the number of players at this table.
+	 * 
+	 * @return the number of players at this table
+	 */
+	public int getNumOfPlayers() {
+		return numOfPlayers;
+	}
+
+	/**
+	 * Returns true if this table has an empty slot for a new player.
+	 * 
+	 * @return true if this table is not full; false otherwise
+	 */
+	public boolean hasEmptySlot() {
+		return numOfPlayers < maxNumOfPlayers;
+	}
+
+	/**
+	 * Returns the state of the game played at this table.
+	 * 
+	 * @return the state of the game, or null if the server does not keep it
+	 */
+	public CardGame getGame() {
+		return game;
+	}
+}
@@ -0,0 +1,107 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Cache of the images of the Big Two GUI. The 52 card faces, the card back and
+ * the avatars are read and decoded once, the avatars are scaled once, and all
+ * of them are copied into images compatible with the screen, so painting the
+ * table reads no files and decodes no images.
+ * @author Darren Chang JR
+ */
+public final class CardImages {
+    /** Width and height of an avatar */
+    public static final int AVATAR_SIZE = 120;
+    /** Number of avatars, one for each player of a table */
+    public static final int NUM_OF_AVATARS = 4;
+
+    // names of the ranks and suits in the names of the card images
+    private static final String[] RANK_NAMES = { "a", "2", "3", "4", "5", "6",
+            "7", "8", "9", "t", "j", "q", "k" };
+    private static final String[] SUIT_NAMES = { "d", "c", "h", "s" };
+
+    // card faces, indexed by suit * 13 + rank
+    private static final Image[] faces = new Image[52];
+    private static final Image back;
+    private static final Image[] avatars = new Image[NUM_OF_AVATARS];
+
+    static {
+        for (int suit = 0; suit < 4; suit++) {
+            for (int rank = 0; rank < 13; rank++) {
+                faces[suit * 13 + rank] = load("./cards/" + RANK_NAMES[rank] + SUIT_NAMES[suit] + ".gif", -1);
+            }
+        }
+        back = load("./cards/b.gif", -1);
+        for (int i = 0; i < NUM_OF_AVATARS; i++) {
+            avatars[i] = load("./players/" + i + ".png", AVATAR_SIZE);
+        }
+    }
+
+    private CardImages() {
+    }
+
+    /**
+     * Returns the image of the face of a card.
+     * @param card the card
+     * @return the image of the face of the card
+     */
+    public static Image getFace(Card card) {
+        return faces[card.getSuit() * 13 + card.getRank()];
+    }
+
+    /**
+     * Returns the image of the back of a card.
+     * @return the image of the back of a card
+     */
+    public static Image getBack() {
+        return back;
+    }
+
+    /**
+     * Returns the avatar of a player, AVATAR_SIZE pixels wide and high.
+     * @param i the index of the player
+     * @return the avatar of the player
+     */
+    public static Image getAvatar(int i) {
+        return avatars[i % NUM_OF_AVATARS];
+    }
+
+    /**
+     * Reads an image and copies it into an image compatible with the screen,
+     * scaling it to size x size pixels if size is not -1. A missing image is
+     * replaced by an empty one, as ImageIcon did.
+     */
+    private static Image load(String path, int size) {
+        BufferedImage source = null;
+        try {
+            source = ImageIO.read(new File(path));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        int width = source == null ? 1 : size == -1 ? source.getWidth() : size;
+        int height = source == null ? 1 : size == -1 ? source.getHeight() : size;
+        // the cards only have transparent corners, which the screen can copy
+        // faster than partly transparent pixels such as the scaled edges
+        int transparency = source != null && size == -1 ? source.getTransparency() : Transparency.TRANSLUCENT;
+        BufferedImage image;
+        if (GraphicsEnvironment.isHeadless()) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        } else {
+            image = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+        }
+        if (source != null) {
+            Graphics2D g = image.createGraphics();
+            if (size == -1) {
+                g.drawImage(source, 0, 0, null);
+            } else {
+                // same quality as the SCALE_SMOOTH scaling used before, done once
+                g.drawImage(source.getScaledInstance(size, size, Image.SCALE_SMOOTH), 0, 0, null);
+            }
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * This class is used to model the connection between a card game server and
+ * one of its clients, independent of how the bytes are moved. The server only
+ * talks to its clients through this class, so that a thread-per-client
+ * transport and a non-blocking one can serve the same game.
+ * <p>
+ * Sending never writes to the socket. The frame is put on a bounded queue of
+ * this connection and a writer of the transport drains it, taking every frame
+ * queued so far in one batch, so that a slow client only delays itself. A
+ * client that lets its queue fill up is disconnected or misses chat messages,
+ * depending on the policy of the server; other messages are never dropped, as
+ * the client would fall out of step with the game.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public abstract class ClientConnection {
+	// the server of the client
+	final CardGameServer server;
+	// the table of the client, or null before a table is found for it
+	CardGameTable table = null;
+	// the slot of the client at its table, which is also its playerID, or -1
+	// if it has none; changed and read with the lock of the table held
+	int playerID = -1;
+	// frames waiting for the writer, oldest first
+	private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<ByteBuffer>();
+	// the number of bytes waiting for the writer
+	private int outboundBytes = 0;
+	// a boolean indicating if the writer has been asked to drain the queue
+	private boolean writeScheduled = false;
+	// a boolean indicating if the connection closes once the queue drains
+	private boolean closing = false;
+	// a boolean indicating if the connection has been closed
+	private boolean closed = false;
+	// the time the writer was last asked to drain the queue, or took frames
+	// from it, in milliseconds
+	private long writeWaitingSince;
+	// the time a frame was last queued, in milliseconds
+	private long lastSendTime;
+	// the time a message was last received, in milliseconds
+	private volatile long lastReadTime;
+
+	/**
+	 * Creates and returns an instance of the ClientConnection class.
+	 *
+	 * @param server
+	 *            the server of the client
+	 */
+	ClientConnection(CardGameServer server) {
+		this.server = server;
+		lastReadTime = lastSendTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Sends the specified message to the client. Errors are printed by the
+	 * server rather than thrown; a lost connection is noticed when reading.
+	 *
+	 * @param message
+	 *            the message to be sent to the client
+	 */
+	public void send(CardGameMessage message) {
+		ByteBuffer frame = encode(message);
+		if (frame != null) {
+			queue(frame, false, false);
+		}
+	}
+
+	/**
+	 * Sends the specified message to the client and closes the connection once
+	 * the message has been written, e.g. to tell a client the server is full.
+	 *
+	 * @param message
+	 *            the last message to be sent to the client
+	 */
+	public void sendAndClose(CardGameMessage message) {
+		ByteBuffer frame = encode(message);
+		if (frame != null) {
+			queue(frame, true, false);
+		}
+	}
+
+	/**
+	 * Sends an encoded frame to the client. The frame is shared, not copied:
+	 * its bytes must not change afterwards, so that one frame can be sent to
+	 * every client at a table.
+	 *
+	 * @param frame
+	 *            the frame to be sent to the client, from its position to its
+	 *            limit
+	 */
+	public void sendFrame(ByteBuffer frame) {
+		// each writer moves the position of its own view of the bytes
+		queue(frame.duplicate(), false, false);
+	}
+
+	/**
+	 * Sends an encoded frame the client can do without, e.g. a chat message,
+	 * which is dropped rather than queued when the queue is full and the
+	 * server drops the messages to slow clients. The frame is shared, as with
+	 * sendFrame.
+	 *
+	 * @param frame
+	 *            the frame to be sent to the client, from its position to its
+	 *            limit
+	 */
+	public void sendDroppableFrame(ByteBuffer frame) {
+		queue(frame.duplicate(), false, true);
+	}
+
+	/**
+	 * Closes the connection to the client.
+	 */
+	public abstract void close();
+
+	/**
+	 * Returns the remote address of the client, for printing.
+	 *
+	 * @return the remote address of the client
+	 */
+	public abstract String getRemoteSocketAddress();
+
+	/**
+	 * Returns the table of the client.
+	 *
+	 * @return the table of the client, or null if it has none
+	 */
+	public CardGameTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns the playerID of the client, i.e. its slot at its table.
+	 *
+	 * @return the playerID of the client, or -1 if it has no slot
+	 */
+	public int getPlayerID() {
+		return playerID;
+	}
+
+	/**
+	 * Notes that a message has been received from the client, which is
+	 * therefore alive.
+	 */
+	void received() {
+		lastReadTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the time a message was last received from the client.
+	 *
+	 * @return the time in milliseconds
+	 */
+	long getLastReadTime() {
+		return lastReadTime;
+	}
+
+	/**
+	 * Returns the time a message was last sent to the client.
+	 *
+	 * @return the time in milliseconds
+	 */
+	synchronized long getLastSendTime() {
+		return lastSendTime;
+	}
+
+	/**
+	 * Returns the time the writer has been waiting on the client since, i.e.
+	 * since it last took frames from the queue while there are frames left to
+	 * write, which is when the client last read what it was sent.
+	 *
+	 * @return the time in milliseconds, or 0 if nothing is waiting to be
+	 *         written
+	 */
+	synchronized long getWriteWaitingSince() {
+		return writeScheduled ? writeWaitingSince : 0;
+	}
+
+	/**
+	 * Returns true once the connection has been closed.
+	 *
+	 * @return true if the connection is closed
+	 */
+	synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Asks the writer of the transport to drain the queue of this connection
+	 * by calling takeFrames() until it returns null.
+	 */
+	protected abstract void scheduleWrite();
+
+	/**
+	 * Takes every frame queued so far, to be written by the writer in one
+	 * batch.
+	 *
+	 * @return the frames in the order they were sent, or null if the queue is
+	 *         empty, in which case the writer is done until the next schedule
+	 */
+	synchronized ByteBuffer[] takeFrames() {
+		if (outbound.isEmpty()) {
+			writeScheduled = false;
+			return null;
+		}
+		ByteBuffer[] frames = outbound.toArray(new ByteBuffer[outbound.size()]);
+		outbound.clear();
+		outboundBytes = 0;
+		// the frames taken before, if any, have been written
+		writeWaitingSince = System.currentTimeMillis();
+		return frames;
+	}
+
+	/**
+	 * Returns true if the connection is to be closed once the queue drains.
+	 *
+	 * @return true if the connection is closing
+	 */
+	synchronized boolean isClosing() {
+		return closing;
+	}
+
+	/**
+	 * Discards the queue and refuses further messages, once the connection is
+	 * closed.
+	 */
+	synchronized void closeOutbound() {
+		closing = true;
+		closed = true;
+		outbound.clear();
+		outboundBytes = 0;
+	}
+
+	/**
+	 * Encodes a message into a frame, printing the error if it cannot be.
+	 */
+	private ByteBuffer encode(CardGameMessage message) {
+		try {
+			return server.codec.encode(message);
+		} catch (IOException ex) {
+			server.log.log(ServerLog.WARNING,
+					"Error in sending a message to the client at "
+							+ getRemoteSocketAddress());
+			if (!server.silentMode) ex.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Queues a frame for the writer, applying the slow client policy of the
+	 * server if the queue is full. Only a droppable frame is ever dropped; a
+	 * client that cannot take any other is disconnected, so that it resumes
+	 * its session and gets the frame again.
+	 */
+	private void queue(ByteBuffer frame, boolean close, boolean droppable) {
+		synchronized (this) {
+			if (closing) {
+				return;
+			}
+			if (outboundBytes + frame.remaining() <= server.getMaxOutboundBytes()) {
+				outbound.add(frame);
+				outboundBytes += frame.remaining();
+				closing = close;
+				lastSendTime = System.currentTimeMillis();
+				if (writeScheduled) {
+					// the writer takes this frame with the others
+					return;
+				}
+				writeScheduled = true;
+				writeWaitingSince = lastSendTime;
+			} else if (droppable
+					&& server.getSlowClientPolicy() == CardGameServer.DROP_MESSAGES) {
+				server.log.log(ServerLog.WARNING,
+						"Drops a message to the slow client at "
+								+ getRemoteSocketAddress());
+				return;
+			} else {
+				// the writer may be blocked on the client, so closes at once
+				outbound.clear();
+				outboundBytes = 0;
+				closing = true;
+				frame = null;
+			}
+		}
+		if (frame == null) {
+			server.log.log(ServerLog.WARNING,
+					"Disconnects the slow client at "
+							+ getRemoteSocketAddress());
+			close();
+		} else {
+			scheduleWrite();
+		}
+	} // queue
+}
@@ -0,0 +1,100 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * This class is used to model the session of a client at a table of a card
+ * game server. It numbers the frames sent to the client and keeps the latest
+ * of them, up to a number of bytes, so that a client that lost its connection
+ * and reconnects can be sent the frames it has not received, whether they were
+ * sent after the server noticed the loss or were lost on the way.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class ClientSession {
+	// the token identifying the session, sent back by the client to resume it
+	private final String token;
+	// the number of bytes of the frames kept
+	private final int maxBytes;
+	// the latest frames sent, oldest first
+	private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<ByteBuffer>();
+	// the number of bytes of the frames kept
+	private int bytes = 0;
+	// the number of frames sent in this session
+	private long numOfFrames = 0;
+
+	/**
+	 * Creates and returns an instance of the ClientSession class.
+	 *
+	 * @param token
+	 *            the token identifying the session
+	 * @param maxBytes
+	 *            the number of bytes of the latest frames kept
+	 */
+	public ClientSession(String token, int maxBytes) {
+		this.token = token;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the token identifying this session.
+	 *
+	 * @return the token of this session
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Returns the number of frames sent in this session.
+	 *
+	 * @return the number of frames sent
+	 */
+	public long getNumOfFrames() {
+		return numOfFrames;
+	}
+
+	/**
+	 * Keeps a frame sent to the client, dropping the oldest frames beyond the
+	 * number of bytes kept. The frame is shared, not copied.
+	 *
+	 * @param frame
+	 *            the frame sent, from its position to its limit
+	 */
+	public void add(ByteBuffer frame) {
+		frames.add(frame.duplicate());
+		bytes += frame.remaining();
+		numOfFrames++;
+		while (bytes > maxBytes) {
+			bytes -= frames.remove().remaining();
+		}
+	}
+
+	/**
+	 * Returns the frames sent after the first numReceived frames of this
+	 * session, i.e. those a client that received numReceived frames is
+	 * missing.
+	 *
+	 * @param numReceived
+	 *            the number of frames the client received
+	 * @return the frames missing, oldest first, or null if some of them are no
+	 *         longer kept
+	 */
+	public ByteBuffer[] getFramesAfter(long numReceived) {
+		long numMissing = numOfFrames - numReceived;
+		if (numMissing < 0 || numMissing > frames.size()) {
+			return null;
+		}
+		ByteBuffer[] missing = new ByteBuffer[(int) numMissing];
+		int skip = frames.size() - missing.length;
+		int i = 0;
+		for (ByteBuffer frame : frames) {
+			if (skip > 0) {
+				skip--;
+			} else {
+				missing[i++] = frame.duplicate();
+			}
+		}
+		return missing;
+	}
+}
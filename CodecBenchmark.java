@@ -0,0 +1,237 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class is used to compare the binary frames of MessageCodec with the
+ * Java serialization the card game protocol used before, for every type of
+ * message. For each type it prints the bytes of a message on one long-lived
+ * ObjectOutputStream, as the original protocol sent it, of a self-contained
+ * serialized frame and of a binary frame, and the number of messages encoded
+ * and decoded per second both ways. A move is serialized as the indices of
+ * its cards, as the original protocol sent it, and a snapshot, which the
+ * original protocol did not have, only in binary. Every binary frame is
+ * checked to decode to a message that encodes to the same bytes.
+ * <p>
+ * Usage: java CodecBenchmark
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class CodecBenchmark {
+	// the number of nanoseconds each rate is measured for
+	private static final long MEASURE_TIME = 300000000L;
+	// the number of runs before a rate is measured
+	private static final int WARM_UP = 20000;
+	// the codec measured, decoding cards into Big Two cards as the client does
+	private static final MessageCodec codec = new MessageCodec() {
+		protected Deck createDeck() {
+			return new BigTwoDeck();
+		}
+	};
+	// keeps the results alive, so that the work measured is not optimized away
+	private static volatile Object sink;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            not being used
+	 * @throws Exception
+	 *             if a message cannot be encoded or decoded
+	 */
+	public static void main(String[] args) throws Exception {
+		BigTwoDeck deck = new BigTwoDeck();
+		deck.shuffle();
+		CardList hand = new CardList();
+		for (int i = 0; i < 13; i++) {
+			hand.addCard(deck.getCard(i));
+		}
+		hand.sort();
+		CardList lastHand = new CardList();
+		lastHand.addCard(deck.getCard(13));
+		String[] names = { "Alice", "Bob", "Charlie", null };
+		long move = 0;
+		for (int i = 0; i < 5; i++) {
+			move |= HandMask.bit(hand.getCard(i));
+		}
+		CardGameSnapshot snapshot = new CardGameSnapshot(42, names,
+				new boolean[] { true, true, true, false }, hand, new int[] { 13,
+						9, 12, 0 }, 1, 0, lastHand, 7);
+
+		String[] types = { "PLAYER_LIST", "JOIN", "FULL", "QUIT", "READY",
+				"START", "MOVE(5)", "MOVE(pass)", "MSG", "REJECT", "SESSION",
+				"RESUME", "HEARTBEAT" };
+		CardGameMessage[] messages = {
+				new CardGameMessage(CardGameMessage.PLAYER_LIST, 2, names),
+				new CardGameMessage(CardGameMessage.JOIN, 2, "Charlie"),
+				new CardGameMessage(CardGameMessage.FULL, -1, null),
+				new CardGameMessage(CardGameMessage.QUIT, 1, "/127.0.0.1:53122"),
+				new CardGameMessage(CardGameMessage.READY, 3, null),
+				new CardGameMessage(CardGameMessage.START, 0, hand),
+				new CardGameMessage(CardGameMessage.MOVE, 1, new CardGameMove(
+						7, move)),
+				new CardGameMessage(CardGameMessage.MOVE, 1, new CardGameMove(
+						7, 0L)),
+				new CardGameMessage(CardGameMessage.MSG, 0,
+						"Alice (/127.0.0.1:53122): good game everyone"),
+				new CardGameMessage(CardGameMessage.REJECT, 1, new CardGameMove(
+						7, move)),
+				new CardGameMessage(CardGameMessage.SESSION, 2, new String[] {
+						"5f0e3c9a1b2d4e6f", "10000" }),
+				new CardGameMessage(CardGameMessage.RESUME, 2, snapshot),
+				new CardGameMessage(CardGameMessage.HEARTBEAT, -1, null) };
+		// the messages as the original protocol serialized them, or null
+		CardGameMessage[] serialized = messages.clone();
+		int[] indices = { 0, 3, 4, 8, 12 };
+		serialized[6] = new CardGameMessage(CardGameMessage.MOVE, 1, indices);
+		serialized[7] = new CardGameMessage(CardGameMessage.MOVE, 1, null);
+		serialized[9] = new CardGameMessage(CardGameMessage.REJECT, 1, indices);
+		serialized[11] = null;
+
+		System.out.println(String.format("%-11s %8s %9s %6s | %10s %10s | %10s %10s",
+				"type", "ser-long", "ser-frame", "binary", "ser enc/s",
+				"bin enc/s", "ser dec/s", "bin dec/s"));
+		for (int t = 0; t < types.length; t++) {
+			final CardGameMessage message = messages[t];
+			final ByteBuffer frame = codec.encode(message);
+			checkRoundTrip(types[t], frame);
+			final int size = frame.remaining();
+			double binaryEncode = rate(new Task() {
+				void run() throws Exception {
+					sink = codec.encode(message);
+				}
+			});
+			double binaryDecode = rate(new Task() {
+				void run() throws Exception {
+					sink = decode(frame);
+				}
+			});
+			if (serialized[t] == null) {
+				System.out.println(String.format(
+						"%-11s %8s %9s %6d | %10s %10.0f | %10s %10.0f",
+						types[t], "-", "-", size, "-", binaryEncode, "-",
+						binaryDecode));
+				continue;
+			}
+
+			final CardGameMessage object = serialized[t];
+			final byte[] bytes = serialize(object);
+			double serialEncode = rate(new Task() {
+				void run() throws Exception {
+					sink = serialize(object);
+				}
+			});
+			double serialDecode = rate(new Task() {
+				void run() throws Exception {
+					sink = new ObjectInputStream(new ByteArrayInputStream(bytes))
+							.readObject();
+				}
+			});
+			System.out.println(String.format(
+					"%-11s %8d %9d %6d | %10.0f %10.0f | %10.0f %10.0f",
+					types[t], sizeOnStream(object), 4 + bytes.length, size,
+					serialEncode, binaryEncode, serialDecode, binaryDecode));
+		}
+	} // main
+
+	/**
+	 * Checks that a frame decodes to a message that encodes to the same bytes.
+	 */
+	private static void checkRoundTrip(String type, ByteBuffer frame)
+			throws IOException {
+		ByteBuffer again = codec.encode(decode(frame));
+		byte[] expected = Arrays.copyOfRange(frame.array(), frame.position(),
+				frame.limit());
+		byte[] actual = Arrays.copyOfRange(again.array(), again.position(),
+				again.limit());
+		if (!Arrays.equals(expected, actual)) {
+			throw new IllegalStateException(type + " does not round-trip");
+		}
+	}
+
+	/**
+	 * Decodes the message of a frame, without its length.
+	 */
+	private static CardGameMessage decode(ByteBuffer frame) throws IOException {
+		return codec.decode(ByteBuffer.wrap(frame.array(), frame.position()
+				+ MessageFrame.HEADER_SIZE, frame.remaining()
+				- MessageFrame.HEADER_SIZE));
+	}
+
+	/**
+	 * Serializes a message on its own ObjectOutputStream.
+	 */
+	private static byte[] serialize(CardGameMessage message) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(message);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Returns the number of bytes a second message like the specified one
+	 * takes on a long-lived ObjectOutputStream, which has already described
+	 * the classes of the message.
+	 */
+	private static int sizeOnStream(CardGameMessage message) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(copy(message));
+		out.flush();
+		int before = bytes.size();
+		out.writeObject(copy(message));
+		out.flush();
+		return bytes.size() - before;
+	}
+
+	/**
+	 * Returns a copy of a message whose data is a new object, as every
+	 * message the original server sent was.
+	 */
+	private static CardGameMessage copy(CardGameMessage message)
+			throws IOException {
+		try {
+			return (CardGameMessage) new ObjectInputStream(
+					new ByteArrayInputStream(serialize(message))).readObject();
+		} catch (ClassNotFoundException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Returns the number of times a task runs per second, after WARM_UP runs.
+	 */
+	private static double rate(Task task) throws Exception {
+		for (int i = 0; i < WARM_UP; i++) {
+			task.run();
+		}
+		long numOfRuns = 0;
+		long start = System.nanoTime();
+		while (System.nanoTime() - start < MEASURE_TIME) {
+			for (int i = 0; i < 1000; i++) {
+				task.run();
+			}
+			numOfRuns += 1000;
+		}
+		return numOfRuns / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * This inner class is used to model the work whose rate is measured.
+	 */
+	private abstract static class Task {
+		/**
+		 * Does the work once.
+		 *
+		 * @throws Exception
+		 *             if the work fails
+		 */
+		abstract void run() throws Exception;
+	} // Task
+}
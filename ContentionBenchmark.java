@@ -0,0 +1,207 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is used to measure how a card game server scales when clients at
+ * different tables send messages at the same time, with the server in the same
+ * process and connections that throw away what they are sent, so that only
+ * the parsing, locking and broadcasting are measured. It first has T threads
+ * chat at T tables for a growing T, and then checks that a table whose moves
+ * take long to check does not hold up the messages of another table.
+ * <p>
+ * Usage: java ContentionBenchmark [numOfMessages]
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class ContentionBenchmark {
+	// the numbers of threads and tables measured
+	private static final int[] NUM_OF_THREADS = { 1, 4, 16, 64 };
+	// the number of players at a table
+	private static final int NUM_OF_PLAYERS = 4;
+	// the number of milliseconds a move at the slow table takes to check
+	private static final int SLOW_CHECK = 2;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            the number of messages sent in each run, 400000 if not
+	 *            specified
+	 * @throws Exception
+	 *             if a thread is interrupted
+	 */
+	public static void main(String[] args) throws Exception {
+		int numOfMessages = (args.length > 0) ? Integer.parseInt(args[0])
+				: 400000;
+		System.out.println(Runtime.getRuntime().availableProcessors()
+				+ " processor(s)");
+		// warms up, so that the first run is not measured before compiling
+		chat(1, numOfMessages, false);
+		for (int t = 0; t < NUM_OF_THREADS.length; t++) {
+			chat(NUM_OF_THREADS[t], numOfMessages, true);
+		}
+		isolate(numOfMessages / 2);
+	} // main
+
+	/**
+	 * Has numOfThreads threads chat at as many tables, each sending its share
+	 * of numOfMessages, and prints the number of messages parsed per second
+	 * if print is true.
+	 */
+	private static void chat(int numOfThreads, int numOfMessages,
+			boolean print) throws InterruptedException {
+		final CardGameServer server = createServer(false);
+		final ClientConnection[] senders = seat(server, numOfThreads);
+		final int share = numOfMessages / numOfThreads;
+		Thread[] threads = new Thread[numOfThreads];
+		for (int t = 0; t < numOfThreads; t++) {
+			final ClientConnection sender = senders[t];
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < share; i++) {
+						server.parseMessage(sender.getTable(), sender,
+								new CardGameMessage(CardGameMessage.MSG, -1,
+										"hello"));
+					}
+				}
+			});
+		}
+		long start = System.nanoTime();
+		for (int t = 0; t < numOfThreads; t++) {
+			threads[t].start();
+		}
+		for (int t = 0; t < numOfThreads; t++) {
+			threads[t].join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (!print) {
+			return;
+		}
+		System.out.println(numOfThreads + " thread(s) at " + numOfThreads
+				+ " table(s): "
+				+ Math.round(share * numOfThreads / seconds) + " msgs/s");
+	} // chat
+
+	/**
+	 * Has a player at table 0 make moves that take SLOW_CHECK milliseconds
+	 * each to check, while a player at table 1 sends numOfMessages chat
+	 * messages, and prints how long the chat took and its longest wait.
+	 */
+	private static void isolate(int numOfMessages) throws InterruptedException {
+		final CardGameServer server = createServer(true);
+		ClientConnection[] senders = seat(server, 2);
+		final ClientConnection mover = senders[0];
+		final AtomicInteger numOfMoves = new AtomicInteger();
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread moves = new Thread(new Runnable() {
+			public void run() {
+				while (!done.get()) {
+					server.parseMessage(mover.getTable(), mover,
+							new CardGameMessage(CardGameMessage.MOVE, -1,
+									new CardGameMove(numOfMoves.get(), 1L)));
+					numOfMoves.incrementAndGet();
+				}
+			}
+		});
+		moves.start();
+		ClientConnection sender = senders[1];
+		long longestWait = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < numOfMessages; i++) {
+			long sent = System.nanoTime();
+			server.parseMessage(sender.getTable(), sender, new CardGameMessage(
+					CardGameMessage.MSG, -1, "hello"));
+			longestWait = Math.max(longestWait, System.nanoTime() - sent);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		done.set(true);
+		moves.join();
+		System.out.println(String.format("%d chat messages at table 1 beside "
+				+ "slow moves at table 0: %.2f s, longest wait %d ms, "
+				+ "table 0 at %d moves/s", numOfMessages, seconds,
+				longestWait / 1000000, Math.round(numOfMoves.get() / seconds)));
+	} // isolate
+
+	/**
+	 * Creates a server that does not run, whose moves at table 0 take
+	 * SLOW_CHECK milliseconds to check if slow is true.
+	 */
+	private static CardGameServer createServer(final boolean slow) {
+		CardGameServer server = new CardGameServer("ContentionBenchmark",
+				NUM_OF_PLAYERS) {
+			protected boolean checkMove(CardGameTable table, int playerID,
+					CardGameMove move) {
+				if (slow && table.getTableID() == 0) {
+					try {
+						Thread.sleep(SLOW_CHECK);
+					} catch (InterruptedException ex) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+		server.log.setLevel(ServerLog.WARNING);
+		server.setIdleTimeouts(0, 0, 0);
+		return server;
+	}
+
+	/**
+	 * Fills numOfTables tables with joined players on connections that throw
+	 * away what they are sent.
+	 *
+	 * @return the connection of the first player at each table
+	 */
+	private static ClientConnection[] seat(CardGameServer server,
+			int numOfTables) {
+		ClientConnection[] senders = new ClientConnection[numOfTables];
+		for (int i = 0; i < numOfTables * NUM_OF_PLAYERS; i++) {
+			ClientConnection connection = new SinkConnection(server, i);
+			server.addConnection(connection);
+			server.parseMessage(connection.getTable(), connection,
+					new CardGameMessage(CardGameMessage.JOIN, -1, "Player " + i));
+			if (i % NUM_OF_PLAYERS == 0) {
+				senders[i / NUM_OF_PLAYERS] = connection;
+			}
+		}
+		return senders;
+	}
+
+	/**
+	 * This inner class is used to model a connection that throws away what it
+	 * is sent as soon as it is queued.
+	 */
+	private static class SinkConnection extends ClientConnection {
+		private final String remoteAddress; // made-up address
+
+		/**
+		 * Creates and returns an instance of the SinkConnection class.
+		 *
+		 * @param server
+		 *            the server of the connection
+		 * @param i
+		 *            the number of the connection, for its address
+		 */
+		SinkConnection(CardGameServer server, int i) {
+			super(server);
+			remoteAddress = "sink-" + i;
+		}
+
+		protected void scheduleWrite() {
+			ByteBuffer[] frames;
+			while ((frames = takeFrames()) != null) {
+				// thrown away
+			}
+		}
+
+		public void close() {
+			closeOutbound();
+		}
+
+		public String getRemoteSocketAddress() {
+			return remoteAddress;
+		}
+	} // SinkConnection
+}
@@ -0,0 +1,175 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lookup table holding the Big Two strength of every five-card combination.
+ * Combinations are indexed by their colex rank, so the 2,598,960 entries take
+ * two bytes each and the table fits in about 5 MB. A strength is
+ * category &lt;&lt; 6 | ranking key, so a greater strength always beats a
+ * smaller one, and 0 marks cards that make no five-card hand.
+ * @author Darren Chang JR
+ */
+public final class FiveCardTable {
+    /** Number of five-card combinations of a 52-card deck */
+    public static final int SIZE = 2598960;
+    /** System property naming the file the table is loaded from or saved to */
+    public static final String PROPERTY = "bigtwo.handtable";
+    private static final int MAGIC = 0x42325448; // "B2TH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int[][] BINOMIAL = new int[6][52];
+    private static volatile FiveCardTable installed;
+
+    static {
+        for (int n = 0; n < 52; ++n) {
+            BINOMIAL[0][n] = 1;
+            for (int k = 1; k <= 5; ++k) {
+                BINOMIAL[k][n] = (n == 0) ? 0 : BINOMIAL[k][n - 1] + BINOMIAL[k - 1][n - 1];
+            }
+        }
+    }
+
+    private final ShortBuffer strengths;
+
+    private FiveCardTable(ShortBuffer strengths) {
+        this.strengths = strengths;
+    }
+
+    /**
+     * Builds the table by evaluating every five-card combination
+     * @return table of all five-card strengths
+     */
+    public static FiveCardTable build() {
+        short[] strengths = new short[SIZE];
+        for (int c4 = 4; c4 < 52; ++c4)
+            for (int c3 = 3; c3 < c4; ++c3)
+                for (int c2 = 2; c2 < c3; ++c2)
+                    for (int c1 = 1; c1 < c2; ++c1)
+                        for (int c0 = 0; c0 < c1; ++c0) {
+                            long mask = 1L << c0 | 1L << c1 | 1L << c2 | 1L << c3 | 1L << c4;
+                            strengths[index(mask)] = (short) toStrength(HandMask.evaluate(mask));
+                        }
+        return new FiveCardTable(ShortBuffer.wrap(strengths));
+    }
+
+    /**
+     * Memory-maps a table previously written by save
+     * @param file file holding the table
+     * @return table backed by the mapped file
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static FiveCardTable load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_BYTES + 2L * SIZE)
+                throw new IOException("Not a hand table: " + file);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != SIZE)
+                throw new IOException("Not a hand table: " + file);
+            return new FiveCardTable(buffer.asShortBuffer());
+        }
+    }
+
+    /**
+     * Loads the table from a file, building and saving it first if the file does not exist
+     * @param file file holding the table
+     * @return table of all five-card strengths
+     * @throws IOException if the file cannot be read or written
+     */
+    public static FiveCardTable loadOrBuild(File file) throws IOException {
+        if (file.exists())
+            return load(file);
+        FiveCardTable table = build();
+        table.save(file);
+        return table;
+    }
+
+    /**
+     * Writes the table to a file
+     * @param file file to be written
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(SIZE);
+            for (int i = 0; i < SIZE; ++i) {
+                out.writeShort(strengths.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the strength of five cards
+     * @param mask mask of exactly five cards
+     * @return category &lt;&lt; 6 | ranking key, or 0 if the cards make no hand
+     */
+    public int strength(long mask) {
+        return strengths.get(index(mask));
+    }
+
+    /**
+     * Returns the colex rank of five cards, C(c0,1) + C(c1,2) + ... + C(c4,5)
+     * for the bit indices c0 &lt; c1 &lt; ... &lt; c4
+     * @param mask mask of exactly five cards
+     * @return index between 0 and SIZE - 1
+     */
+    public static int index(long mask) {
+        int index = 0;
+        long m = mask;
+        for (int k = 1; k <= 5; ++k) {
+            index += BINOMIAL[k][Long.numberOfTrailingZeros(m)];
+            m &= m - 1;
+        }
+        return index;
+    }
+
+    /**
+     * Converts a value returned by HandMask.evaluate to a table strength
+     * @param evaluation value returned by HandMask.evaluate
+     * @return strength, or 0 if the evaluation is not a five-card hand
+     */
+    public static int toStrength(int evaluation) {
+        int category = HandMask.categoryOf(evaluation);
+        if (!HandMask.isFiveCard(category))
+            return 0;
+        return category << 6 | HandMask.keyOf(evaluation);
+    }
+
+    /**
+     * Returns the category of a strength read from the table
+     * @param strength strength of five cards
+     * @return category of the strength, or 0 if the cards make no hand
+     */
+    public static int categoryOf(int strength) {
+        return strength >>> 6;
+    }
+
+    /**
+     * Returns the table used by HandMask.beats, if any
+     * @return installed table, or null if five-card hands are evaluated directly
+     */
+    public static FiveCardTable getInstalled() { return installed; }
+
+    /**
+     * Sets the table used by HandMask.beats
+     * @param table table to be used, or null to evaluate five-card hands directly
+     */
+    public static void install(FiveCardTable table) { installed = table; }
+
+    /**
+     * Installs the table from the file named by the bigtwo.handtable system
+     * property, if it is set; the table is built and saved on first use
+     */
+    public static void installFromProperty() {
+        String path = System.getProperty(PROPERTY);
+        if (path == null)
+            return;
+        try {
+            install(loadOrBuild(new File(path)));
+        } catch (Exception e) { e.printStackTrace(); }
+    }
+}
@@ -1,9 +1,14 @@
 /**
- * Models an abstract Hand used in a Big Two card game
+ * Models an abstract Hand used in a Big Two card game. The mask, ranking key
+ * and top card of a hand are computed once when it is built, so hands must not
+ * be modified afterwards.
  * @author Darren Chang JR
  */
 public abstract class Hand extends CardList {
     private final CardGamePlayer player;
+    private final long mask;
+    private final int key;
+    private final Card topCard;
 
     /**
      * Build a Hand with the player and cards
@@ -16,6 +21,18 @@ public abstract class Hand extends CardList {
             addCard(cards.getCard(i));
         }
         this.sort();
+        mask = HandMask.of(this);
+
+        // the key stays -1 for an invalid hand so that it never beats or is beaten
+        int category = getHandType().ordinal();
+        boolean valid = isValid();
+        key = valid ? HandMask.key(mask, category) : -1;
+        int top = valid ? HandMask.topCard(mask, category) : (isEmpty() ? -1 : HandMask.top(mask));
+        Card found = null;
+        for (int i = 0; i < size() && found == null; ++i) {
+            if (HandMask.index(getCard(i)) == top) found = getCard(i);
+        }
+        topCard = found;
     }
 
     /**
@@ -24,27 +41,40 @@ public abstract class Hand extends CardList {
      */
     public CardGamePlayer getPlayer() { return player; }
 
+    /**
+     * Return the mask of the cards in this hand
+     * @return mask of the cards in this hand
+     */
+    public long getMask() { return mask; }
+
     /**
      * Return the top card of this hand
      * @return top card of this hand
      */
-    public Card getTopCard() {
-        if (!this.isEmpty()) {
-            this.sort();
-            return (this.getCard(this.size() - 1));
-        }
-        return null;
-    }
+    public Card getTopCard() { return topCard; }
 
     /**
      * Check if this hand beats a specified hand
      * @param hand target hand to beat
      * @return true if this hand beats target false otherwise
      */
-    public boolean beats(Hand hand) {        
-        if (hand == null || !this.isValid() || !hand.isValid() || this.getType() != hand.getType())
+    public boolean beats(Hand hand) {
+        if (hand == null || this.key < 0 || hand.key < 0)
             return false;
-        return (this.getTopCard().compareTo(hand.getTopCard()) > 0);
+        HandType type = this.getHandType(), otherType = hand.getHandType();
+        // five-card hands are looked up in the table of their strengths when one is installed;
+        // the table classifies the cards afresh, so it is only read when both hands are of the
+        // type their cards make, which keeps the result the same with or without the table
+        FiveCardTable table = FiveCardTable.getInstalled();
+        if (type.isFiveCard() && otherType.isFiveCard() && table != null) {
+            int strength = table.strength(mask), otherStrength = table.strength(hand.mask);
+            if (FiveCardTable.categoryOf(strength) == type.ordinal()
+                    && FiveCardTable.categoryOf(otherStrength) == otherType.ordinal())
+                return strength > otherStrength;
+        }
+        if (type == otherType)
+            return this.key > hand.key;
+        return type.isFiveCard() && otherType.isFiveCard() && type.compareTo(otherType) > 0;
     }
 
     /**
@@ -53,9 +83,15 @@ public abstract class Hand extends CardList {
      */
     public abstract boolean isValid();
 
+    /**
+     * Return the type of hand
+     * @return type of hand
+     */
+    public abstract HandType getHandType();
+
     /**
      * Return the type of hand as a String
      * @return type of hand
      */
-    public abstract String getType();
+    public String getType() { return getHandType().getName(); }
 }
@@ -0,0 +1,371 @@
+/**
+ * Primitive hand engine for a Big Two card game. A set of cards is a single
+ * long with one bit per card; bit i holds the card whose Big Two rank is i / 4
+ * (3 = 0, 4 = 1, ..., A = 11, 2 = 12) and whose suit is i % 4, so a higher bit
+ * is always a higher card in the order of BigTwoCard.compareTo.
+ * @author Darren Chang JR
+ */
+public final class HandMask {
+    /** Category of a set of cards that is not a legal hand */
+    public static final int INVALID = -1;
+    /** Category of a Single */
+    public static final int SINGLE = 0;
+    /** Category of a Pair */
+    public static final int PAIR = 1;
+    /** Category of a Triple */
+    public static final int TRIPLE = 2;
+    /** Category of a Straight */
+    public static final int STRAIGHT = 3;
+    /** Category of a Flush */
+    public static final int FLUSH = 4;
+    /** Category of a FullHouse */
+    public static final int FULL_HOUSE = 5;
+    /** Category of a Quad */
+    public static final int QUAD = 6;
+    /** Category of a StraightFlush */
+    public static final int STRAIGHT_FLUSH = 7;
+
+    /** Mask of all 52 cards */
+    public static final long FULL_DECK = (1L << 52) - 1;
+    /** Mask of all Diamonds, shift left by the suit for the other suits */
+    public static final long SUIT_MASK = 0x1111111111111L;
+    /** Mask of the lowest rank (all four 3s), shift left by 4 * rank for the other ranks */
+    public static final long RANK_MASK = 0xFL;
+
+    private HandMask() {}
+
+    /**
+     * Returns the bit index of a card
+     * @param card card to be indexed
+     * @return bit index of the card between 0 and 51
+     */
+    public static int index(Card card) {
+        return ((card.getRank() + 11) % 13) * 4 + card.getSuit();
+    }
+
+    /**
+     * Returns the single-bit mask of a card
+     * @param card card to be converted
+     * @return mask with only the bit of the card set
+     */
+    public static long bit(Card card) {
+        return 1L << index(card);
+    }
+
+    /**
+     * Returns the mask of a list of cards
+     * @param cards list of cards
+     * @return mask with the bits of all cards in the list set
+     */
+    public static long of(CardList cards) {
+        long mask = 0L;
+        for (int i = 0; i < cards.size(); ++i) {
+            mask |= bit(cards.getCard(i));
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the card at a bit index
+     * @param index bit index between 0 and 51
+     * @return card at the bit index
+     */
+    public static Card card(int index) {
+        return new BigTwoCard(index & 3, ((index >>> 2) + 2) % 13);
+    }
+
+    /**
+     * Returns the cards of a mask in ascending Big Two order
+     * @param mask mask of cards
+     * @return list of cards in the mask
+     */
+    public static CardList toCardList(long mask) {
+        CardList cards = new CardList();
+        for (long m = mask; m != 0; m &= m - 1) {
+            cards.addCard(card(Long.numberOfTrailingZeros(m)));
+        }
+        return cards;
+    }
+
+    /**
+     * Returns the number of cards in a mask
+     * @param mask mask of cards
+     * @return number of cards
+     */
+    public static int size(long mask) {
+        return Long.bitCount(mask);
+    }
+
+    /**
+     * Returns the bit index of the highest card in a mask
+     * @param mask non-empty mask of cards
+     * @return bit index of the highest card
+     */
+    public static int top(long mask) {
+        return 63 - Long.numberOfLeadingZeros(mask);
+    }
+
+    /**
+     * Returns the 13-bit set of Big Two ranks present in a mask
+     * @param mask mask of cards
+     * @return bit r is set if any card of Big Two rank r is in the mask
+     */
+    public static int rankBits(long mask) {
+        long m = (mask | mask >>> 1 | mask >>> 2 | mask >>> 3) & SUIT_MASK;
+        int bits = 0;
+        for (; m != 0; m &= m - 1) {
+            bits |= 1 << (Long.numberOfTrailingZeros(m) >>> 2);
+        }
+        return bits;
+    }
+
+    /**
+     * Checks if a mask is a Single
+     * @param mask mask of cards
+     * @return true if the mask is a Single false otherwise
+     */
+    public static boolean isSingle(long mask) {
+        return Long.bitCount(mask) == 1;
+    }
+
+    /**
+     * Checks if a mask is a Pair
+     * @param mask mask of cards
+     * @return true if the mask is a Pair false otherwise
+     */
+    public static boolean isPair(long mask) {
+        return Long.bitCount(mask) == 2 && Integer.bitCount(rankBits(mask)) == 1;
+    }
+
+    /**
+     * Checks if a mask is a Triple
+     * @param mask mask of cards
+     * @return true if the mask is a Triple false otherwise
+     */
+    public static boolean isTriple(long mask) {
+        return Long.bitCount(mask) == 3 && Integer.bitCount(rankBits(mask)) == 1;
+    }
+
+    /**
+     * Checks if a mask is a Straight, five consecutive Big Two ranks of any suits
+     * @param mask mask of cards
+     * @return true if the mask is a Straight false otherwise
+     */
+    public static boolean isStraight(long mask) {
+        if (Long.bitCount(mask) != 5)
+            return false;
+        int ranks = rankBits(mask);
+        return (ranks >>> Integer.numberOfTrailingZeros(ranks)) == 0x1F;
+    }
+
+    /**
+     * Checks if a mask is a Flush, five cards of the same suit
+     * @param mask mask of cards
+     * @return true if the mask is a Flush false otherwise
+     */
+    public static boolean isFlush(long mask) {
+        if (Long.bitCount(mask) != 5)
+            return false;
+        int suit = Long.numberOfTrailingZeros(mask) & 3;
+        return (mask & ~(SUIT_MASK << suit)) == 0;
+    }
+
+    /**
+     * Checks if a mask is a FullHouse, a Triple with a Pair
+     * @param mask mask of cards
+     * @return true if the mask is a FullHouse false otherwise
+     */
+    public static boolean isFullHouse(long mask) {
+        return Long.bitCount(mask) == 5 && Integer.bitCount(rankBits(mask)) == 2 && quadRank(mask) < 0;
+    }
+
+    /**
+     * Checks if a mask is a Quad, four cards of the same rank with a single
+     * @param mask mask of cards
+     * @return true if the mask is a Quad false otherwise
+     */
+    public static boolean isQuad(long mask) {
+        return Long.bitCount(mask) == 5 && quadRank(mask) >= 0;
+    }
+
+    /**
+     * Checks if a mask is a StraightFlush
+     * @param mask mask of cards
+     * @return true if the mask is a StraightFlush false otherwise
+     */
+    public static boolean isStraightFlush(long mask) {
+        return isStraight(mask) && isFlush(mask);
+    }
+
+    /**
+     * Returns the category of a mask
+     * @param mask mask of cards
+     * @return category of the mask, or INVALID if no hand is composable
+     */
+    public static int classify(long mask) {
+        return categoryOf(evaluate(mask));
+    }
+
+    /**
+     * Classifies a mask and computes its ranking key in a single pass over its
+     * cards, building the rank and suit histograms once instead of testing each
+     * category in turn
+     * @param mask mask of cards
+     * @return category in the high bits and ranking key in the low 8 bits, or
+     *         INVALID if no hand is composable
+     */
+    public static int evaluate(long mask) {
+        int size = Long.bitCount(mask);
+        if (size == 0 || size == 4 || size > 5)
+            return INVALID;
+
+        // cards come out in ascending order, so cards of one rank are adjacent
+        int ranks = 0, suits = 0, run = 0, longestRun = 0, longestRank = -1, previousRank = -1;
+        for (long m = mask; m != 0; m &= m - 1) {
+            int index = Long.numberOfTrailingZeros(m);
+            int rank = index >>> 2;
+            ranks |= 1 << rank;
+            suits |= 1 << (index & 3);
+            run = (rank == previousRank) ? run + 1 : 1;
+            previousRank = rank;
+            if (run >= longestRun) {
+                longestRun = run;
+                longestRank = rank;
+            }
+        }
+
+        int top = top(mask);
+        int distinctRanks = Integer.bitCount(ranks);
+        if (size == 1)
+            return SINGLE << 8 | top;
+        if (size == 2)
+            return (distinctRanks == 1) ? PAIR << 8 | top : INVALID;
+        if (size == 3)
+            return (distinctRanks == 1) ? TRIPLE << 8 | top : INVALID;
+
+        boolean flush = Integer.bitCount(suits) == 1;
+        boolean straight = distinctRanks == 5 && (ranks >>> Integer.numberOfTrailingZeros(ranks)) == 0x1F;
+        if (straight && flush)
+            return STRAIGHT_FLUSH << 8 | top;
+        if (longestRun == 4)
+            return QUAD << 8 | longestRank * 4 + 3;
+        if (longestRun == 3 && distinctRanks == 2)
+            return FULL_HOUSE << 8 | top(mask & (RANK_MASK << 4 * longestRank));
+        if (flush)
+            return FLUSH << 8 | (top & 3) << 4 | top >>> 2;
+        if (straight)
+            return STRAIGHT << 8 | top;
+        return INVALID;
+    }
+
+    /**
+     * Returns the category of a value returned by evaluate
+     * @param evaluation value returned by evaluate
+     * @return category, or INVALID
+     */
+    public static int categoryOf(int evaluation) {
+        return evaluation >> 8;
+    }
+
+    /**
+     * Returns the ranking key of a value returned by evaluate
+     * @param evaluation value returned by evaluate
+     * @return ranking key, or -1 if the evaluation is INVALID
+     */
+    public static int keyOf(int evaluation) {
+        return (evaluation == INVALID) ? -1 : evaluation & 0xFF;
+    }
+
+    /**
+     * Checks if a category is one of the five-card hands
+     * @param category category of a hand
+     * @return true if the category is a five-card hand false otherwise
+     */
+    public static boolean isFiveCard(int category) {
+        return category >= STRAIGHT;
+    }
+
+    /**
+     * Returns the ranking key of a mask within its category; of two hands of the
+     * same category the one with the greater key wins
+     * @param mask mask of cards
+     * @param category category of the mask
+     * @return ranking key between 0 and 63, or -1 if the category is INVALID
+     */
+    public static int key(long mask, int category) {
+        switch (category) {
+            case FLUSH:
+                // higher suit wins, then higher top card
+                return (top(mask) & 3) << 4 | top(mask) >>> 2;
+            case FULL_HOUSE:
+                // top card of the triple
+                return top(mask & (RANK_MASK << 4 * tripleRank(mask)));
+            case QUAD:
+                // top card of the quad is always its Spade
+                return quadRank(mask) * 4 + 3;
+            case INVALID:
+                return -1;
+            default:
+                return top(mask);
+        }
+    }
+
+    /**
+     * Returns the bit index of the card that decides the ranking of a hand
+     * @param mask mask of cards
+     * @param category category of the mask
+     * @return bit index of the top card, or -1 if the category is INVALID
+     */
+    public static int topCard(long mask, int category) {
+        if (category == FLUSH) return top(mask);
+        return key(mask, category);
+    }
+
+    /**
+     * Compares two masks of cards in Big Two, reading five-card strengths from
+     * the installed FiveCardTable if there is one
+     * @param mask mask of cards played
+     * @param other mask of the target hand to beat
+     * @return true if mask beats other false otherwise
+     */
+    public static boolean beats(long mask, long other) {
+        FiveCardTable table = FiveCardTable.getInstalled();
+        if (table != null && size(mask) == 5 && size(other) == 5) {
+            int otherStrength = table.strength(other);
+            return otherStrength != 0 && table.strength(mask) > otherStrength;
+        }
+
+        return beatsEvaluation(evaluate(mask), evaluate(other));
+    }
+
+    /**
+     * Compares two values returned by evaluate in Big Two
+     * @param evaluation evaluation of the cards played
+     * @param otherEvaluation evaluation of the target hand to beat
+     * @return true if the first evaluation beats the second false otherwise
+     */
+    public static boolean beatsEvaluation(int evaluation, int otherEvaluation) {
+        if (evaluation == INVALID || otherEvaluation == INVALID)
+            return false;
+        int category = categoryOf(evaluation), otherCategory = categoryOf(otherEvaluation);
+        if (category == otherCategory)
+            return keyOf(evaluation) > keyOf(otherEvaluation);
+        return isFiveCard(category) && isFiveCard(otherCategory) && category > otherCategory;
+    }
+
+    private static int quadRank(long mask) {
+        for (int ranks = rankBits(mask); ranks != 0; ranks &= ranks - 1) {
+            int rank = Integer.numberOfTrailingZeros(ranks);
+            if ((mask >>> 4 * rank & RANK_MASK) == RANK_MASK) return rank;
+        }
+        return -1;
+    }
+
+    private static int tripleRank(long mask) {
+        for (int ranks = rankBits(mask); ranks != 0; ranks &= ranks - 1) {
+            int rank = Integer.numberOfTrailingZeros(ranks);
+            if (Long.bitCount(mask >>> 4 * rank & RANK_MASK) >= 3) return rank;
+        }
+        return -1;
+    }
+}
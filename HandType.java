@@ -0,0 +1,58 @@
+/**
+ * Types of hand in a Big Two card game, declared in order of precedence so
+ * that among five-card hands a later type beats an earlier one. The ordinal
+ * of each type is its HandMask category.
+ * @author Darren Chang JR
+ */
+public enum HandType {
+    SINGLE("Single", 1),
+    PAIR("Pair", 2),
+    TRIPLE("Triple", 3),
+    STRAIGHT("Straight", 5),
+    FLUSH("Flush", 5),
+    FULL_HOUSE("FullHouse", 5),
+    QUAD("Quad", 5),
+    STRAIGHT_FLUSH("StraightFlush", 5);
+
+    private static final HandType[] TYPES = values();
+    private final String name;
+    private final int size;
+
+    HandType(String name, int size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    /**
+     * Return the name of this type as shown to players
+     * @return name of this type
+     */
+    public String getName() { return name; }
+
+    /**
+     * Return the number of cards in a hand of this type
+     * @return number of cards in a hand of this type
+     */
+    public int getSize() { return size; }
+
+    /**
+     * Check if this type is one of the five-card hands
+     * @return true if this type is a five-card hand false otherwise
+     */
+    public boolean isFiveCard() { return size == 5; }
+
+    /**
+     * Return the type of a HandMask category
+     * @param category HandMask category
+     * @return type of the category, or null if the category is INVALID
+     */
+    public static HandType of(int category) {
+        return (category < 0 || category >= TYPES.length) ? null : TYPES[category];
+    }
+
+    /**
+     * Return the name of this type as shown to players
+     * @return name of this type
+     */
+    public String toString() { return name; }
+}
@@ -0,0 +1,163 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * This class is used to check that the heap of a card game server stays flat
+ * while a single long-lived connection carries a million MOVE messages, so
+ * that nothing is kept per message sent or received. A large chat message is
+ * sent first, so that a read buffer grown for it must shrink again. The server
+ * runs in the same process, in the I/O mode chosen by the system properties
+ * of CardGameServer, and the check exits with status 1 if the heap used after
+ * a full collection grows by more than MAX_GROWTH bytes.
+ * <p>
+ * Usage: java [-Dcardgame.io=selector|thread|virtual] HeapRegressionCheck
+ * [numOfMoves]
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class HeapRegressionCheck {
+	/**
+	 * The number of bytes the heap may grow by before the check fails
+	 */
+	public static final long MAX_GROWTH = 8 * 1024 * 1024;
+	// the number of moves sent before the heap is first measured
+	private static final int WARM_UP = 10000;
+	// the number of moves sent but not received back at most, so that the
+	// client never counts as slow
+	private static final int WINDOW = 1000;
+	// the number of moves echoed back by the server
+	private static volatile long numOfReceived = 0;
+
+	/**
+	 * Runs the check.
+	 *
+	 * @param args
+	 *            the number of moves to be sent, 1000000 if not specified
+	 * @throws Exception
+	 *             if the server cannot be reached
+	 */
+	public static void main(String[] args) throws Exception {
+		int numOfMoves = (args.length > 0) ? Integer.parseInt(args[0])
+				: 1000000;
+		final CardGameServer server = new CardGameServer(
+				"HeapRegressionCheck", 4);
+		server.configureFromProperties();
+		server.log.setLevel(ServerLog.WARNING);
+		ServerSocket probe = new ServerSocket(0);
+		final int port = probe.getLocalPort();
+		probe.close();
+		Thread serverThread = new Thread(new Runnable() {
+			public void run() {
+				server.start(port);
+			}
+		}, "HeapRegressionCheck-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		final MessageCodec codec = new MessageCodec();
+		Socket socket = connect(port);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(
+				socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				socket.getOutputStream()));
+		MessageFrame.write(out, codec, new CardGameMessage(
+				CardGameMessage.JOIN, -1, "check"));
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				try {
+					CardGameMessage message;
+					while ((message = MessageFrame.read(in, codec)) != null) {
+						if (message.getType() == CardGameMessage.MOVE) {
+							numOfReceived++;
+						}
+					}
+				} catch (Exception ex) {
+					// the connection is closed at the end
+				}
+			}
+		}, "HeapRegressionCheck-reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		// a chat message close to the largest frame, read in one piece
+		char[] chat = new char[40 * 1024];
+		Arrays.fill(chat, 'x');
+		MessageFrame.write(out, codec, new CardGameMessage(CardGameMessage.MSG,
+				-1, new String(chat)));
+
+		long baseline = 0;
+		long[] cards = { 0x1L, 0x30L, 0x700L, 0x1F000L };
+		for (int i = 0; i < numOfMoves; i++) {
+			while (i - numOfReceived >= WINDOW) {
+				Thread.sleep(1);
+			}
+			MessageFrame.write(out, codec, new CardGameMessage(
+					CardGameMessage.MOVE, -1, new CardGameMove(i, cards[i
+							% cards.length])));
+			if (i + 1 == WARM_UP) {
+				baseline = usedHeap();
+				System.out.println("sent " + (i + 1) + ": "
+						+ toMegabytes(baseline) + " MB (baseline)");
+			} else if ((i + 1) % (numOfMoves / 4) == 0) {
+				System.out.println("sent " + (i + 1) + ": "
+						+ toMegabytes(usedHeap()) + " MB");
+			}
+		}
+		while (numOfReceived < numOfMoves) {
+			Thread.sleep(1);
+		}
+		long growth = usedHeap() - baseline;
+		socket.close();
+		System.out.println("received " + numOfReceived + " moves back; heap grew by "
+				+ toMegabytes(growth) + " MB");
+		if (growth > MAX_GROWTH) {
+			System.out.println("FAILED: the heap grew by more than "
+					+ toMegabytes(MAX_GROWTH) + " MB");
+			System.exit(1);
+		}
+		System.out.println("PASSED");
+	} // main
+
+	/**
+	 * Connects to the server, retrying while it starts up.
+	 */
+	private static Socket connect(int port) throws Exception {
+		for (int attempt = 0;; attempt++) {
+			try {
+				Socket socket = new Socket("127.0.0.1", port);
+				socket.setTcpNoDelay(true);
+				return socket;
+			} catch (java.net.ConnectException ex) {
+				if (attempt == 50) {
+					throw ex;
+				}
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the heap used after a full collection.
+	 */
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Returns a number of bytes in megabytes, with one decimal.
+	 */
+	private static String toMegabytes(long bytes) {
+		return String.format("%.1f", bytes / (1024.0 * 1024.0));
+	}
+}
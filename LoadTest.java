@@ -0,0 +1,337 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+/**
+ * This class is used to load a card game server over the loopback with many
+ * idle lobby connections, all driven by one selector so that the driver costs
+ * no thread per connection. The connections are opened one after another and
+ * each waits for its PLAYER_LIST, answering heartbeats. It prints how long
+ * they took to connect and, given the process id of the server on Linux, the
+ * resident memory and the number of threads of the server, to compare its I/O
+ * modes. The server needs a slot for every connection, e.g. java BigTwoServer
+ * 2396 2500 --headless for 10000 connections.
+ * <p>
+ * With --play, every client then joins and gets ready, so that a game starts
+ * at every table, and sends NUM_OF_CHATS chat messages, which measures how
+ * fast the server moves messages between many busy clients, e.g. with the
+ * clients served by platform or by virtual threads.
+ * <p>
+ * Usage: java LoadTest [--play] host port numOfConnections [serverPid]
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class LoadTest {
+	// the codec of the messages sent to and received from the server
+	private final MessageCodec codec = new MessageCodec();
+	// the selector over the connections
+	private final Selector selector;
+	// the connections opened
+	private final Connection[] connections;
+	/**
+	 * The number of chat messages sent by every client with --play
+	 */
+	public static final int NUM_OF_CHATS = 5;
+	// the number of players at a table of the server
+	private static final int NUM_OF_PLAYERS = 4;
+	// the number of connections that received their PLAYER_LIST
+	private int numOfConnected = 0;
+	// the number of connections that received START
+	private int numOfStarted = 0;
+	// the number of chat messages received by all connections
+	private long numOfChats = 0;
+
+	/**
+	 * Creates and returns an instance of the LoadTest class.
+	 *
+	 * @param numOfConnections
+	 *            the number of connections to be opened
+	 * @throws IOException
+	 *             if no selector can be opened
+	 */
+	public LoadTest(int numOfConnections) throws IOException {
+		selector = Selector.open();
+		connections = new Connection[numOfConnections];
+	}
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param args
+	 *            the host and port of the server, the number of connections
+	 *            and, optionally, the process id of the server
+	 * @throws Exception
+	 *             if the server cannot be reached
+	 */
+	public static void main(String[] args) throws Exception {
+		boolean play = (args.length > 0 && "--play".equals(args[0]));
+		int first = play ? 1 : 0;
+		if (args.length < first + 3) {
+			System.out.println("Usage: java LoadTest [--play] host port numOfConnections [serverPid]");
+			return;
+		}
+		InetSocketAddress address = new InetSocketAddress(args[first],
+				Integer.parseInt(args[first + 1]));
+		int numOfConnections = Integer.parseInt(args[first + 2]);
+		String pid = (args.length > first + 3) ? args[first + 3] : null;
+		if (play && numOfConnections % NUM_OF_PLAYERS != 0) {
+			System.out.println("With --play, the clients must fill their tables");
+			return;
+		}
+		LoadTest test = new LoadTest(numOfConnections);
+
+		long start = System.nanoTime();
+		test.connect(address);
+		System.out.println(numOfConnections + " connections in "
+				+ seconds(start) + " s");
+		if (play) {
+			test.startGames();
+			System.out.println(numOfConnections / NUM_OF_PLAYERS
+					+ " games started after " + seconds(start) + " s");
+			long chatStart = System.nanoTime();
+			long numOfDeliveries = test.chat();
+			System.out.println(numOfDeliveries + " chat messages delivered in "
+					+ seconds(chatStart) + " s, "
+					+ Math.round(numOfDeliveries
+							/ ((System.nanoTime() - chatStart) / 1e9))
+					+ " per second");
+		}
+		printServer(pid);
+		test.close();
+	} // main
+
+	/**
+	 * Opens the connections one after another, serving those already open
+	 * meanwhile, and waits until all of them received their PLAYER_LIST.
+	 *
+	 * @param address
+	 *            the address of the server
+	 * @throws IOException
+	 *             if a connection cannot be opened
+	 */
+	public void connect(InetSocketAddress address) throws IOException {
+		for (int i = 0; i < connections.length; i++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			connections[i] = new Connection(channel);
+			connections[i].key = channel.register(selector,
+					SelectionKey.OP_READ, connections[i]);
+			poll(0);
+		}
+		while (numOfConnected < connections.length) {
+			poll(1000);
+		}
+	} // connect
+
+	/**
+	 * Has every client join and get ready, and waits until all of them
+	 * received START.
+	 *
+	 * @throws IOException
+	 *             if a connection is lost
+	 */
+	public void startGames() throws IOException {
+		for (int i = 0; i < connections.length; i++) {
+			connections[i].send(new CardGameMessage(CardGameMessage.JOIN, -1,
+					"Player " + i));
+			connections[i].send(new CardGameMessage(CardGameMessage.READY, -1,
+					null));
+			poll(0);
+		}
+		while (numOfStarted < connections.length) {
+			poll(1000);
+		}
+	} // startGames
+
+	/**
+	 * Has every client send NUM_OF_CHATS chat messages, and waits until every
+	 * client at each table received them.
+	 *
+	 * @return the number of chat messages delivered
+	 * @throws IOException
+	 *             if a connection is lost
+	 */
+	public long chat() throws IOException {
+		long numOfDeliveries = (long) connections.length * NUM_OF_CHATS
+				* NUM_OF_PLAYERS;
+		for (int k = 0; k < NUM_OF_CHATS; k++) {
+			for (int i = 0; i < connections.length; i++) {
+				connections[i].send(new CardGameMessage(CardGameMessage.MSG,
+						-1, "Message " + k));
+				poll(0);
+			}
+		}
+		while (numOfChats < numOfDeliveries) {
+			poll(1000);
+		}
+		return numOfDeliveries;
+	} // chat
+
+	/**
+	 * Closes every connection.
+	 */
+	public void close() {
+		for (int i = 0; i < connections.length; i++) {
+			try {
+				connections[i].channel.close();
+			} catch (IOException ex) {
+				// closing anyway
+			}
+		}
+	}
+
+	/**
+	 * Reads what the connections have, waiting up to timeout milliseconds for
+	 * any, or not at all if timeout is 0.
+	 */
+	private void poll(long timeout) throws IOException {
+		if (timeout == 0) {
+			selector.selectNow();
+		} else {
+			selector.select(timeout);
+		}
+		Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+		while (it.hasNext()) {
+			SelectionKey key = it.next();
+			it.remove();
+			if (key.isValid() && key.isReadable()) {
+				((Connection) key.attachment()).read();
+			}
+		}
+	}
+
+	/**
+	 * Handles a message received on a connection.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param message
+	 *            the message received
+	 */
+	protected void received(Connection connection, CardGameMessage message)
+			throws IOException {
+		switch (message.getType()) {
+		case CardGameMessage.PLAYER_LIST:
+			numOfConnected++;
+			break;
+		case CardGameMessage.START:
+			numOfStarted++;
+			break;
+		case CardGameMessage.MSG:
+			numOfChats++;
+			break;
+		case CardGameMessage.HEARTBEAT:
+			connection.send(new CardGameMessage(CardGameMessage.HEARTBEAT, -1,
+					null));
+			break;
+		case CardGameMessage.FULL:
+			throw new IOException("The server is full");
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Prints the resident memory and the number of threads of a process on
+	 * Linux.
+	 */
+	private static void printServer(String pid) {
+		if (pid == null) {
+			return;
+		}
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/" + pid
+					+ "/status"))) {
+				if (line.startsWith("VmRSS") || line.startsWith("Threads")) {
+					System.out.println("server " + line.replaceAll("\\s+", " "));
+				}
+			}
+		} catch (IOException ex) {
+			System.out.println("Cannot read the status of process " + pid);
+		}
+	}
+
+	/**
+	 * Returns the number of seconds since a time read from System.nanoTime,
+	 * with one decimal.
+	 */
+	static String seconds(long start) {
+		return String.format("%.1f", (System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * This inner class is used to model a connection to the server with its
+	 * own read buffer.
+	 */
+	class Connection {
+		private final SocketChannel channel;
+		private SelectionKey key;
+		// bytes read but not parsed yet, kept in write mode between reads
+		private ByteBuffer readBuffer = ByteBuffer
+				.allocate(MessageFrame.READ_BUFFER_SIZE);
+
+		/**
+		 * Creates and returns an instance of the Connection class.
+		 *
+		 * @param channel
+		 *            the channel to the server
+		 */
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Sends a message to the server, waiting while the channel is full.
+		 *
+		 * @param message
+		 *            the message to be sent
+		 * @throws IOException
+		 *             if the message cannot be sent
+		 */
+		void send(CardGameMessage message) throws IOException {
+			ByteBuffer frame = codec.encode(message);
+			while (frame.hasRemaining()) {
+				channel.write(frame);
+			}
+		}
+
+		/**
+		 * Reads what the channel has and handles every complete message.
+		 */
+		void read() throws IOException {
+			if (channel.read(readBuffer) < 0) {
+				throw new IOException("Connection closed by the server");
+			}
+			readBuffer.flip();
+			while (readBuffer.remaining() >= MessageFrame.HEADER_SIZE) {
+				int start = readBuffer.position();
+				int frameSize = MessageFrame.HEADER_SIZE
+						+ readBuffer.getInt(start);
+				if (readBuffer.remaining() < frameSize) {
+					if (readBuffer.capacity() < frameSize) {
+						// grows the buffer to hold the whole frame
+						ByteBuffer larger = ByteBuffer.allocate(frameSize);
+						larger.put(readBuffer);
+						readBuffer = larger;
+						return;
+					}
+					break;
+				}
+				CardGameMessage message = codec.decode(ByteBuffer.wrap(
+						readBuffer.array(), start + MessageFrame.HEADER_SIZE,
+						frameSize - MessageFrame.HEADER_SIZE));
+				readBuffer.position(start + frameSize);
+				received(this, message);
+			}
+			readBuffer.compact();
+		}
+	} // Connection
+}
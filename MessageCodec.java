@@ -0,0 +1,409 @@
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is used to encode the messages of a network card game into
+ * frames of a compact binary protocol, and to decode them back. After the
+ * 4-byte length of the frame come the protocol version, the message type and
+ * the playerID, one byte each, followed by the data of the message: a tag byte
+ * telling its kind and then the data itself. Cards travel as one byte each
+ * (suit * 13 + rank), a move as the lowest byte of its sequence number
+ * followed by the indices of the bits of its cards, one byte each, up to the
+ * end of the frame, and strings as UTF-8 with a 2-byte length. A snapshot of a
+ * table, with the name, ready state and number of cards of every player, the
+ * cards of the player of the client and the last hand on the table, takes less
+ * than 60 bytes with short names.
+ * 
+ * @author Darren Chang JR
+ *
+ */
+public class MessageCodec {
+	/**
+	 * The version of the protocol written in every frame
+	 */
+	public static final int VERSION = 3;
+	// tags of the kinds of data a message can carry
+	private static final int NULL = 0;
+	private static final int STRING = 1;
+	private static final int STRING_ARRAY = 2;
+	private static final int INT_ARRAY = 3;
+	private static final int CARD_LIST = 4;
+	private static final int SNAPSHOT = 5;
+	private static final int MOVE = 6;
+	// the largest number of moves in a snapshot
+	private static final int MAX_NUM_OF_MOVES = 0xFFFF;
+	// the length written in place of a missing string
+	private static final int NULL_STRING = 0xFFFF;
+	// the number of bytes in front of the data of a frame
+	private static final int FRAME_HEADER_SIZE = MessageFrame.HEADER_SIZE + 4;
+
+	/**
+	 * Encodes the specified message into a frame.
+	 * 
+	 * @param message
+	 *            the message to be encoded
+	 * @return a buffer holding the whole frame, ready to be written
+	 * @throws IOException
+	 *             if the data of the message cannot be encoded or the frame
+	 *             is too large
+	 */
+	public ByteBuffer encode(GameMessage message) throws IOException {
+		Object data = message.getData();
+		int tag;
+		int dataSize;
+		byte[][] strings = null;
+		if (data == null) {
+			tag = NULL;
+			dataSize = 0;
+		} else if (data instanceof String) {
+			tag = STRING;
+			strings = new byte[][] { toBytes((String) data) };
+			dataSize = sizeOf(strings);
+		} else if (data instanceof String[]) {
+			tag = STRING_ARRAY;
+			String[] array = (String[]) data;
+			strings = new byte[array.length][];
+			for (int i = 0; i < array.length; i++) {
+				strings[i] = toBytes(array[i]);
+			}
+			dataSize = 1 + sizeOf(strings);
+		} else if (data instanceof int[]) {
+			tag = INT_ARRAY;
+			dataSize = 1 + ((int[]) data).length;
+		} else if (data instanceof CardList) {
+			tag = CARD_LIST;
+			dataSize = 1 + ((CardList) data).size();
+		} else if (data instanceof CardGameSnapshot) {
+			tag = SNAPSHOT;
+			CardGameSnapshot snapshot = (CardGameSnapshot) data;
+			strings = new byte[snapshot.getNumOfPlayers()][];
+			// the numbers of messages and moves, the current player, the
+			// player of the last hand, the number of players, the cards of the
+			// last hand and those of the player of the client
+			dataSize = 8 + 2 + 1 + 1 + 1 + sizeOf(snapshot.getLastHand())
+					+ sizeOf(snapshot.getHand());
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = toBytes(snapshot.getName(i));
+				// the ready state and the number of cards of the player
+				dataSize += 1 + 1;
+			}
+			dataSize += sizeOf(strings);
+		} else if (data instanceof CardGameMove) {
+			tag = MOVE;
+			dataSize = 1 + Long.bitCount(((CardGameMove) data).getCards());
+		} else {
+			throw new IOException("Cannot encode the data of a message: "
+					+ data.getClass().getName());
+		}
+
+		MessageFrame.checkPayloadSize(FRAME_HEADER_SIZE - MessageFrame.HEADER_SIZE
+				+ dataSize);
+		ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + dataSize);
+		frame.putInt(frame.capacity() - MessageFrame.HEADER_SIZE);
+		frame.put((byte) VERSION);
+		frame.put(toByte(message.getType()));
+		frame.put(toByte(message.getPlayerID()));
+		frame.put((byte) tag);
+		switch (tag) {
+		case STRING:
+			putString(frame, strings[0]);
+			break;
+		case STRING_ARRAY:
+			frame.put(toCount(strings.length));
+			for (int i = 0; i < strings.length; i++) {
+				putString(frame, strings[i]);
+			}
+			break;
+		case INT_ARRAY:
+			int[] values = (int[]) data;
+			frame.put(toCount(values.length));
+			for (int i = 0; i < values.length; i++) {
+				frame.put(toByte(values[i]));
+			}
+			break;
+		case CARD_LIST:
+			putCards(frame, (CardList) data);
+			break;
+		case SNAPSHOT:
+			CardGameSnapshot snapshot = (CardGameSnapshot) data;
+			frame.putLong(snapshot.getNumOfMessages());
+			frame.putShort(toNumOfMoves(snapshot.getNumOfMoves()));
+			frame.put(toByte(snapshot.getCurrentPlayerIdx()));
+			frame.put(toByte(snapshot.getLastHandPlayerIdx()));
+			putCards(frame, snapshot.getLastHand());
+			putCards(frame, snapshot.getHand());
+			frame.put(toCount(strings.length));
+			for (int i = 0; i < strings.length; i++) {
+				putString(frame, strings[i]);
+				frame.put((byte) (snapshot.isReady(i) ? 1 : 0));
+				frame.put(toCount(snapshot.getNumOfCards(i)));
+			}
+			break;
+		case MOVE:
+			CardGameMove move = (CardGameMove) data;
+			long cards = move.getCards();
+			if ((cards & ~HandMask.FULL_DECK) != 0) {
+				throw new IOException("Invalid cards in a move: " + cards);
+			}
+			frame.put((byte) move.getSequence());
+			for (long m = cards; m != 0; m &= m - 1) {
+				frame.put((byte) Long.numberOfTrailingZeros(m));
+			}
+			break;
+		default:
+			break;
+		}
+		frame.flip();
+		return frame;
+	} // encode
+
+	/**
+	 * Decodes a message from the payload of a frame, i.e. the bytes after the
+	 * length of the frame.
+	 * 
+	 * @param payload
+	 *            the heap buffer holding the payload from its position to its
+	 *            limit
+	 * @return the message carried by the frame
+	 * @throws IOException
+	 *             if the payload is not a valid message
+	 */
+	public CardGameMessage decode(ByteBuffer payload) throws IOException {
+		try {
+			int version = payload.get();
+			if (version != VERSION) {
+				throw new StreamCorruptedException(
+						"Unsupported protocol version: " + version);
+			}
+			int type = payload.get();
+			int playerID = payload.get();
+			Object data;
+			int tag = payload.get();
+			switch (tag) {
+			case NULL:
+				data = null;
+				break;
+			case STRING:
+				data = getString(payload);
+				break;
+			case STRING_ARRAY:
+				String[] strings = new String[payload.get() & 0xFF];
+				for (int i = 0; i < strings.length; i++) {
+					strings[i] = getString(payload);
+				}
+				data = strings;
+				break;
+			case INT_ARRAY:
+				int[] values = new int[payload.get() & 0xFF];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = payload.get();
+				}
+				data = values;
+				break;
+			case CARD_LIST:
+				data = getCards(payload);
+				break;
+			case SNAPSHOT:
+				data = getSnapshot(payload);
+				break;
+			case MOVE:
+				data = getMove(payload);
+				break;
+			default:
+				throw new StreamCorruptedException("Unknown data tag: " + tag);
+			}
+			if (payload.hasRemaining()) {
+				throw new StreamCorruptedException("Trailing bytes in a frame");
+			}
+			return new CardGameMessage(type, playerID, data);
+		} catch (BufferUnderflowException ex) {
+			throw new StreamCorruptedException("Truncated frame");
+		}
+	} // decode
+
+	/**
+	 * Creates and returns the deck that the cards of a message are decoded
+	 * into. The deck must hold its cards in the order Deck.initialize() adds
+	 * them (suit by suit, rank by rank), so that the card of code
+	 * suit * 13 + rank can be taken from it. Overrides this method if a
+	 * different type of deck is needed.
+	 * 
+	 * @return a new deck with all its cards in their initial order
+	 */
+	protected Deck createDeck() {
+		return new Deck();
+	}
+
+	/**
+	 * Reads the cards of a message into a new deck, keeping their order.
+	 */
+	private Deck getCards(ByteBuffer payload) throws IOException {
+		Deck deck = createDeck();
+		Card[] cards = new Card[deck.size()];
+		for (int i = 0; i < cards.length; i++) {
+			cards[i] = deck.getCard(i);
+		}
+		deck.removeAllCards();
+		int numOfCards = payload.get() & 0xFF;
+		for (int i = 0; i < numOfCards; i++) {
+			int code = payload.get();
+			if (code < 0 || code >= cards.length) {
+				throw new StreamCorruptedException("Invalid card: " + code);
+			}
+			deck.addCard(cards[code]);
+		}
+		return deck;
+	}
+
+	/**
+	 * Reads a snapshot of a table, with a new deck for each list of cards.
+	 */
+	private CardGameSnapshot getSnapshot(ByteBuffer payload) throws IOException {
+		long numOfMessages = payload.getLong();
+		int numOfMoves = payload.getShort() & 0xFFFF;
+		int currentPlayerIdx = payload.get();
+		int lastHandPlayerIdx = payload.get();
+		Deck lastHand = getCards(payload);
+		Deck hand = getCards(payload);
+		int numOfPlayers = payload.get() & 0xFF;
+		String[] names = new String[numOfPlayers];
+		boolean[] readyStates = new boolean[numOfPlayers];
+		int[] numOfCards = new int[numOfPlayers];
+		for (int i = 0; i < numOfPlayers; i++) {
+			names[i] = getString(payload);
+			readyStates[i] = (payload.get() != 0);
+			numOfCards[i] = payload.get() & 0xFF;
+		}
+		if (currentPlayerIdx < -1 || currentPlayerIdx >= numOfPlayers
+				|| lastHandPlayerIdx < -1 || lastHandPlayerIdx >= numOfPlayers) {
+			throw new StreamCorruptedException("Invalid player in a snapshot");
+		}
+		return new CardGameSnapshot(numOfMessages, names, readyStates, hand,
+				numOfCards, currentPlayerIdx, lastHandPlayerIdx,
+				(lastHandPlayerIdx < 0) ? null : lastHand, numOfMoves);
+	}
+
+	/**
+	 * Reads a move, whose cards are the indices of their bits in its mask up
+	 * to the end of the payload. The sequence number read is the lowest byte
+	 * of the one sent.
+	 */
+	private static CardGameMove getMove(ByteBuffer payload) throws IOException {
+		int sequence = payload.get() & 0xFF;
+		long cards = 0;
+		while (payload.hasRemaining()) {
+			int index = payload.get();
+			if (index < 0 || index >= 52) {
+				throw new StreamCorruptedException("Invalid card: " + index);
+			}
+			cards |= 1L << index;
+		}
+		return new CardGameMove(sequence, cards);
+	}
+
+	/**
+	 * Returns the number of bytes taken by the specified cards, or by no
+	 * cards if null.
+	 */
+	private static int sizeOf(CardList cards) {
+		return 1 + (cards == null ? 0 : cards.size());
+	}
+
+	/**
+	 * Writes the count and the codes of the specified cards, or a count of 0
+	 * if null.
+	 */
+	private static void putCards(ByteBuffer frame, CardList cards)
+			throws IOException {
+		int numOfCards = (cards == null ? 0 : cards.size());
+		frame.put(toCount(numOfCards));
+		for (int i = 0; i < numOfCards; i++) {
+			Card card = cards.getCard(i);
+			frame.put((byte) (card.getSuit() * 13 + card.getRank()));
+		}
+	}
+
+	/**
+	 * Returns the UTF-8 bytes of a string, or null for a missing string.
+	 */
+	private static byte[] toBytes(String s) throws IOException {
+		if (s == null) {
+			return null;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length >= NULL_STRING) {
+			throw new IOException("String too long to be encoded: "
+					+ bytes.length + " bytes");
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the specified strings.
+	 */
+	private static int sizeOf(byte[][] strings) {
+		int size = 0;
+		for (int i = 0; i < strings.length; i++) {
+			size += 2 + (strings[i] == null ? 0 : strings[i].length);
+		}
+		return size;
+	}
+
+	private static void putString(ByteBuffer frame, byte[] bytes) {
+		if (bytes == null) {
+			frame.putShort((short) NULL_STRING);
+		} else {
+			frame.putShort((short) bytes.length);
+			frame.put(bytes);
+		}
+	}
+
+	private static String getString(ByteBuffer payload) {
+		int length = payload.getShort() & 0xFFFF;
+		if (length == NULL_STRING) {
+			return null;
+		}
+		if (length > payload.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		String s = new String(payload.array(), payload.arrayOffset()
+				+ payload.position(), length, StandardCharsets.UTF_8);
+		payload.position(payload.position() + length);
+		return s;
+	}
+
+	/**
+	 * Returns the specified value as a signed byte, checking that it fits.
+	 */
+	private static byte toByte(int value) throws IOException {
+		if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+			throw new IOException("Value too large to be encoded: " + value);
+		}
+		return (byte) value;
+	}
+
+	/**
+	 * Returns the specified number of moves as an unsigned short, checking
+	 * that it fits.
+	 */
+	private static short toNumOfMoves(int numOfMoves) throws IOException {
+		if (numOfMoves < 0 || numOfMoves > MAX_NUM_OF_MOVES) {
+			throw new IOException("Number of moves too large to be encoded: "
+					+ numOfMoves);
+		}
+		return (short) numOfMoves;
+	}
+
+	/**
+	 * Returns the specified count as an unsigned byte, checking that it fits.
+	 */
+	private static byte toCount(int count) throws IOException {
+		if (count > 0xFF) {
+			throw new IOException("Too many items to be encoded: " + count);
+		}
+		return (byte) count;
+	}
+}
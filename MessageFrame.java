@@ -0,0 +1,88 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is used to frame the messages of a network game. Every message is
+ * sent as a 4-byte length followed by that many bytes of payload, so that a
+ * receiver can tell where a message ends without blocking on it. The payload is
+ * encoded by a MessageCodec, which keeps no state between messages.
+ * 
+ * @author Darren Chang JR
+ *
+ */
+public final class MessageFrame {
+	/**
+	 * The number of bytes of the length field in front of every payload
+	 */
+	public static final int HEADER_SIZE = 4;
+	/**
+	 * The maximum number of bytes of payload accepted in a single frame
+	 */
+	public static final int MAX_PAYLOAD_SIZE = 64 * 1024;
+	/**
+	 * The number of bytes a server buffers for reading from each client. Most
+	 * frames fit; a larger frame is read past or into a temporary buffer, so
+	 * that an idle connection never holds more than this
+	 */
+	public static final int READ_BUFFER_SIZE = 512;
+
+	private MessageFrame() {
+	}
+
+	/**
+	 * Writes the specified message as a frame to a stream.
+	 * 
+	 * @param out
+	 *            the stream to be written to
+	 * @param codec
+	 *            the codec encoding the message
+	 * @param message
+	 *            the message to be written
+	 * @throws IOException
+	 *             if the message cannot be written
+	 */
+	public static void write(DataOutputStream out, MessageCodec codec,
+			GameMessage message) throws IOException {
+		ByteBuffer frame = codec.encode(message);
+		out.write(frame.array(), 0, frame.limit());
+		out.flush();
+	} // write
+
+	/**
+	 * Reads a frame from a stream, blocking until the whole frame arrives.
+	 * 
+	 * @param in
+	 *            the stream to be read from
+	 * @param codec
+	 *            the codec decoding the message
+	 * @return the message carried by the frame
+	 * @throws IOException
+	 *             if the stream is closed or the frame is not valid
+	 */
+	public static CardGameMessage read(DataInputStream in, MessageCodec codec)
+			throws IOException {
+		int payloadSize = in.readInt();
+		checkPayloadSize(payloadSize);
+		byte[] payload = new byte[payloadSize];
+		in.readFully(payload);
+		return codec.decode(ByteBuffer.wrap(payload));
+	} // read
+
+	/**
+	 * Checks the size of the payload announced by a frame.
+	 * 
+	 * @param payloadSize
+	 *            the number of bytes of the payload
+	 * @throws IOException
+	 *             if the size is negative or larger than MAX_PAYLOAD_SIZE
+	 */
+	static void checkPayloadSize(int payloadSize) throws IOException {
+		if (payloadSize < 0 || payloadSize > MAX_PAYLOAD_SIZE) {
+			throw new StreamCorruptedException("Invalid frame size: "
+					+ payloadSize);
+		}
+	} // checkPayloadSize
+}
@@ -0,0 +1,191 @@
+import java.util.ArrayList;
+
+/**
+ * Generates the legal moves of a player in a Big Two card game. Cards are
+ * bucketed by rank and by suit, so pairs, triples, full houses and quads are
+ * built from the cards of one or two ranks, straights from one card of each of
+ * five consecutive ranks and flushes from the cards of one suit, instead of
+ * testing every subset of the hand. A generator reuses its buffer and does not
+ * allocate once it has grown to the largest move list seen.
+ * @author Darren Chang JR
+ */
+public class MoveGenerator {
+    private long[] moves = new long[64];
+    private int numOfMoves;
+    private long required;
+    private long last;
+    private int lastEvaluation;
+    // five-card strengths read by HandMask.beats, or null to evaluate the hands
+    private FiveCardTable table;
+
+    /**
+     * Generates every move that can be played from a set of cards
+     * @param cards mask of the cards held by the player
+     * @param last mask of the hand to beat, or 0 if the player may lead any hand
+     * @param required mask of cards every move must contain, or 0 if none
+     * @return number of moves generated
+     */
+    public int generate(long cards, long last, long required) {
+        this.numOfMoves = 0;
+        this.required = required;
+        this.last = last;
+        this.table = FiveCardTable.getInstalled();
+        this.lastEvaluation = (last == 0) ? HandMask.INVALID : HandMask.evaluate(last);
+        if (last != 0 && lastEvaluation == HandMask.INVALID)
+            return 0;
+        if ((cards & required) != required)
+            return 0;
+
+        int lastCategory = HandMask.categoryOf(lastEvaluation);
+        boolean lead = last == 0;
+        if (lead || lastCategory == HandMask.SINGLE)
+            choose(cards, 1, 0L);
+        for (int rank = 0; rank < 13; ++rank) {
+            long bucket = cards & (HandMask.RANK_MASK << 4 * rank);
+            if (lead || lastCategory == HandMask.PAIR)
+                choose(bucket, 2, 0L);
+            if (lead || lastCategory == HandMask.TRIPLE)
+                choose(bucket, 3, 0L);
+        }
+        if (lead || HandMask.isFiveCard(lastCategory)) {
+            // straight flushes come out of the straights and are skipped among the flushes
+            straights(cards, 0, 0L);
+            if (lead || lastCategory <= HandMask.FLUSH)
+                flushes(cards);
+            if (lead || lastCategory <= HandMask.FULL_HOUSE)
+                fullHouses(cards);
+            if (lead || lastCategory <= HandMask.QUAD)
+                quads(cards);
+        }
+        return numOfMoves;
+    }
+
+    /**
+     * Returns the number of moves generated by the last call to generate
+     * @return number of moves
+     */
+    public int size() { return numOfMoves; }
+
+    /**
+     * Returns a move generated by the last call to generate
+     * @param i index of the move
+     * @return mask of the cards of the move
+     */
+    public long getMove(int i) { return moves[i]; }
+
+    /**
+     * Returns every hand a player can legally play against the last hand
+     * @param player player whose cards in hand are used
+     * @param last hand to beat, or null if the player may lead any hand
+     * @param required mask of cards every move must contain, or 0 if none
+     * @return list of hands made of the player's own cards
+     */
+    public static ArrayList<Hand> legalMoves(CardGamePlayer player, Hand last, long required) {
+        CardList cardsInHand = player.getCardsInHand();
+        Card[] byIndex = new Card[52];
+        for (int i = 0; i < cardsInHand.size(); ++i) {
+            byIndex[HandMask.index(cardsInHand.getCard(i))] = cardsInHand.getCard(i);
+        }
+
+        MoveGenerator generator = new MoveGenerator();
+        int count = generator.generate(HandMask.of(cardsInHand), (last == null) ? 0L : last.getMask(), required);
+        ArrayList<Hand> hands = new ArrayList<Hand>(count);
+        for (int i = 0; i < count; ++i) {
+            CardList cards = new CardList();
+            for (long m = generator.getMove(i); m != 0; m &= m - 1) {
+                cards.addCard(byIndex[Long.numberOfTrailingZeros(m)]);
+            }
+            hands.add(BigTwoEngine.composeHand(player, cards));
+        }
+        return hands;
+    }
+
+    private void straights(long cards, int length, long move) {
+        if (length == 5) {
+            add(move);
+            return;
+        }
+        // a straight starts at rank 0 to 8 and the next rank continues it
+        int from = (length == 0) ? 0 : HandMask.top(move) / 4 + 1;
+        int to = (length == 0) ? 8 : from;
+        for (int rank = from; rank <= to; ++rank) {
+            for (long m = cards & (HandMask.RANK_MASK << 4 * rank); m != 0; m &= m - 1) {
+                straights(cards, length + 1, move | (m & -m));
+            }
+        }
+    }
+
+    private void flushes(long cards) {
+        for (int suit = 0; suit < 4; ++suit) {
+            long bucket = cards & (HandMask.SUIT_MASK << suit);
+            if (Long.bitCount(bucket) >= 5)
+                chooseFlush(bucket, 5, 0L);
+        }
+    }
+
+    private void chooseFlush(long pool, int k, long move) {
+        if (k == 0) {
+            if (!HandMask.isStraight(move)) add(move);
+            return;
+        }
+        for (long m = pool; Long.bitCount(m) >= k; m &= m - 1) {
+            chooseFlush(m & (m - 1), k - 1, move | (m & -m));
+        }
+    }
+
+    private void fullHouses(long cards) {
+        for (int tripleRank = 0; tripleRank < 13; ++tripleRank) {
+            long triples = cards & (HandMask.RANK_MASK << 4 * tripleRank);
+            if (Long.bitCount(triples) < 3)
+                continue;
+            for (int pairRank = 0; pairRank < 13; ++pairRank) {
+                long pairs = cards & (HandMask.RANK_MASK << 4 * pairRank);
+                if (pairRank == tripleRank || Long.bitCount(pairs) < 2)
+                    continue;
+                // a 3-subset of a rank is the whole rank, or the rank without one of its four cards
+                long drop = (Long.bitCount(triples) == 4) ? triples : 0L;
+                do {
+                    choose(pairs, 2, triples & ~(drop & -drop));
+                    drop &= drop - 1;
+                } while (drop != 0);
+            }
+        }
+    }
+
+    private void quads(long cards) {
+        for (int rank = 0; rank < 13; ++rank) {
+            long quad = HandMask.RANK_MASK << 4 * rank;
+            if ((cards & quad) == quad)
+                choose(cards & ~quad, 1, quad);
+        }
+    }
+
+    private void choose(long pool, int k, long move) {
+        if (k == 0) {
+            add(move);
+            return;
+        }
+        for (long m = pool; Long.bitCount(m) >= k; m &= m - 1) {
+            choose(m & (m - 1), k - 1, move | (m & -m));
+        }
+    }
+
+    private boolean beatsLast(long move) {
+        if (table != null && Long.bitCount(move) == 5 && HandMask.isFiveCard(HandMask.categoryOf(lastEvaluation)))
+            return HandMask.beats(move, last);
+        return HandMask.beatsEvaluation(HandMask.evaluate(move), lastEvaluation);
+    }
+
+    private void add(long move) {
+        if ((move & required) != required)
+            return;
+        if (lastEvaluation != HandMask.INVALID && !beatsLast(move))
+            return;
+        if (numOfMoves == moves.length) {
+            long[] grown = new long[moves.length * 2];
+            System.arraycopy(moves, 0, grown, 0, numOfMoves);
+            moves = grown;
+        }
+        moves[numOfMoves++] = move;
+    }
+}
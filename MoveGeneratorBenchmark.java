@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class is used to measure how fast MoveGenerator lists the moves of a
+ * 13-card hand, both when the player leads and when it answers a hand played
+ * by another player, and prints the calls and the moves generated per
+ * second. It first checks the generator against testing every subset of 1,
+ * 2, 3 and 5 cards of random hands, so that the moves counted are the right
+ * ones, and exits with status 1 if they differ.
+ * <p>
+ * Usage: java MoveGeneratorBenchmark [seconds]
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class MoveGeneratorBenchmark {
+	// the number of random hands checked against testing every subset
+	private static final int NUM_OF_CHECKS = 3000;
+	// the number of random deals cycled through while measuring
+	private static final int NUM_OF_DEALS = 4096;
+	// the number of cards dealt to a player
+	private static final int HAND_SIZE = 13;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            the number of seconds each case is measured for, 2 if not
+	 *            specified
+	 */
+	public static void main(String[] args) {
+		double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 2;
+		Random random = new Random(5);
+		MoveGenerator generator = new MoveGenerator();
+
+		for (int i = 0; i < NUM_OF_CHECKS; i++) {
+			long[] deal = deal(random, generator);
+			long cards = deal[0];
+			long last = random.nextBoolean() ? 0L : deal[1];
+			// half of the checks must contain a card of the hand, as the
+			// opening hand must
+			long required = 0L;
+			if (random.nextBoolean()) {
+				long m = cards;
+				for (int k = random.nextInt(HAND_SIZE); k > 0; k--) {
+					m &= m - 1;
+				}
+				required = Long.lowestOneBit(m);
+			}
+			long[] expected = everySubset(cards, last, required);
+			generator.generate(cards, last, required);
+			long[] actual = new long[generator.size()];
+			for (int j = 0; j < actual.length; j++) {
+				actual[j] = generator.getMove(j);
+			}
+			Arrays.sort(actual);
+			if (!Arrays.equals(expected, actual)) {
+				System.out.println("FAILED: the moves of "
+						+ Long.toHexString(cards) + " against "
+						+ Long.toHexString(last) + " differ from every subset");
+				System.exit(1);
+			}
+		}
+		System.out.println(NUM_OF_CHECKS
+				+ " hands checked against every subset of their cards");
+
+		long[] hands = new long[NUM_OF_DEALS];
+		long[] lastHands = new long[NUM_OF_DEALS];
+		for (int i = 0; i < NUM_OF_DEALS; i++) {
+			long[] deal = deal(random, generator);
+			hands[i] = deal[0];
+			lastHands[i] = deal[1];
+		}
+		measure("leading", generator, hands, new long[NUM_OF_DEALS], seconds);
+		measure("answering", generator, hands, lastHands, seconds);
+	} // main
+
+	/**
+	 * Deals a random hand to a player and a random hand played by another
+	 * player from the rest of the deck.
+	 *
+	 * @return the mask of the cards of the player and of the hand played
+	 */
+	private static long[] deal(Random random, MoveGenerator generator) {
+		int[] deck = new int[52];
+		for (int i = 0; i < deck.length; i++) {
+			deck[i] = i;
+		}
+		long cards = 0, others = 0;
+		for (int i = 0; i < 2 * HAND_SIZE; i++) {
+			int j = i + random.nextInt(deck.length - i);
+			int card = deck[j];
+			deck[j] = deck[i];
+			deck[i] = card;
+			if (i < HAND_SIZE) {
+				cards |= 1L << card;
+			} else {
+				others |= 1L << card;
+			}
+		}
+		generator.generate(others, 0L, 0L);
+		return new long[] { cards,
+				generator.getMove(random.nextInt(generator.size())) };
+	}
+
+	/**
+	 * Returns every subset of 1, 2, 3 or 5 of the cards that contains the
+	 * required cards and makes a hand that beats the last one, in ascending
+	 * order.
+	 */
+	private static long[] everySubset(long cards, long last, long required) {
+		long[] bits = new long[Long.bitCount(cards)];
+		int n = 0;
+		for (long m = cards; m != 0; m &= m - 1) {
+			bits[n++] = Long.lowestOneBit(m);
+		}
+		int lastEvaluation = (last == 0) ? HandMask.INVALID : HandMask
+				.evaluate(last);
+		long[] moves = new long[1 << n];
+		int numOfMoves = 0;
+		for (int subset = 1; subset < (1 << n); subset++) {
+			int size = Integer.bitCount(subset);
+			if (size == 4 || size > 5) {
+				continue;
+			}
+			long move = 0;
+			for (int i = 0; i < n; i++) {
+				if ((subset >> i & 1) != 0) {
+					move |= bits[i];
+				}
+			}
+			int evaluation = HandMask.evaluate(move);
+			if ((move & required) == required
+					&& evaluation != HandMask.INVALID
+					&& (last == 0 || HandMask.beatsEvaluation(evaluation,
+							lastEvaluation))) {
+				moves[numOfMoves++] = move;
+			}
+		}
+		long[] sorted = Arrays.copyOf(moves, numOfMoves);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Generates the moves of the hands against the last hands, 0 to lead, for
+	 * a number of seconds after a warm-up, and prints the rates.
+	 */
+	private static void measure(String name, MoveGenerator generator,
+			long[] hands, long[] lastHands, double seconds) {
+		for (int i = 0; i < 200000; i++) {
+			generator.generate(hands[i % NUM_OF_DEALS], lastHands[i
+					% NUM_OF_DEALS], 0L);
+		}
+		long numOfCalls = 0, numOfMoves = 0;
+		long start = System.nanoTime();
+		long end = start + (long) (seconds * 1e9);
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < NUM_OF_DEALS; i++) {
+				numOfMoves += generator.generate(hands[i], lastHands[i], 0L);
+			}
+			numOfCalls += NUM_OF_DEALS;
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format(
+				"%-9s %5.1f moves/call  %5.2fM calls/s  %5.1fM moves/s", name,
+				(double) numOfMoves / numOfCalls, numOfCalls / elapsed / 1e6,
+				numOfMoves / elapsed / 1e6));
+	}
+}
@@ -0,0 +1,359 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class is used to serve the clients of a card game server with
+ * non-blocking socket channels. A single acceptor hands every new connection
+ * to one of a small fixed pool of I/O threads, each running a selector over
+ * its share of the connections, so that an idle client costs a buffer and a
+ * selection key instead of a thread.
+ * 
+ * @author Darren Chang JR
+ *
+ */
+public class NioTransport {
+	// the server whose clients are served
+	private final CardGameServer server;
+	// the I/O threads, each with its own selector
+	private final Worker[] workers;
+	// index of the I/O thread serving the next connection
+	private int nextWorker = 0;
+
+	/**
+	 * Creates and returns an instance of the NioTransport class.
+	 * 
+	 * @param server
+	 *            the server whose clients are served
+	 * @param numOfThreads
+	 *            the number of I/O threads
+	 */
+	public NioTransport(CardGameServer server, int numOfThreads) {
+		this.server = server;
+		this.workers = new Worker[numOfThreads];
+	}
+
+	/**
+	 * Starts the I/O threads and accepts connections at the specified port
+	 * until the server socket is closed.
+	 * 
+	 * @param port
+	 *            the specified port at which the server starts
+	 */
+	public void start(int port) {
+		try {
+			ServerSocketChannel serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(port), 1024);
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = new Worker(i);
+				workers[i].thread.start();
+			}
+			server.println("Starts up the server at localhost:"
+					+ serverChannel.socket().getLocalPort() + " with "
+					+ workers.length + " I/O thread(s)");
+
+			while (serverChannel.isOpen()) {
+				// waits for clients to connect
+				SocketChannel channel = serverChannel.accept();
+				try {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+				} catch (IOException ex) {
+					channel.close();
+					continue;
+				}
+				workers[nextWorker].register(channel);
+				nextWorker = (nextWorker + 1) % workers.length;
+			}
+		} catch (Exception ex) {
+			server.log.log(ServerLog.ERROR,
+					"Error in starting up the server at localhost:" + port);
+			if (!server.silentMode) ex.printStackTrace();
+		}
+	} // start
+
+	/**
+	 * This inner class is used to model an I/O thread with its selector.
+	 */
+	private class Worker implements Runnable {
+		private final Thread thread;
+		private final Selector selector;
+		// channels accepted but not registered yet
+		private final ConcurrentLinkedQueue<SocketChannel> newChannels = new ConcurrentLinkedQueue<SocketChannel>();
+		// connections with frames queued by other threads
+		private final ConcurrentLinkedQueue<NioConnection> writeRequests = new ConcurrentLinkedQueue<NioConnection>();
+		// connections closed but not removed from their tables yet
+		private final ConcurrentLinkedQueue<NioConnection> closedConnections = new ConcurrentLinkedQueue<NioConnection>();
+
+		/**
+		 * Creates and returns an instance of the Worker class.
+		 * 
+		 * @param index
+		 *            the index of this I/O thread, for its name
+		 * @throws IOException
+		 *             if no selector can be opened
+		 */
+		public Worker(int index) throws IOException {
+			selector = Selector.open();
+			thread = new Thread(this, "CardGameServer-io-" + index);
+		}
+
+		/**
+		 * Hands a newly accepted channel to this I/O thread.
+		 * 
+		 * @param channel
+		 *            the channel of the new client
+		 */
+		public void register(SocketChannel channel) {
+			newChannels.add(channel);
+			selector.wakeup();
+		}
+
+		/**
+		 * Asks this I/O thread to write the frames queued on a connection.
+		 * The frames are written at once when called from this I/O thread.
+		 * 
+		 * @param connection
+		 *            the connection with queued frames
+		 */
+		public void requestWrite(NioConnection connection) {
+			if (Thread.currentThread() == thread) {
+				connection.flush();
+			} else {
+				writeRequests.add(connection);
+				selector.wakeup();
+			}
+		}
+
+		/**
+		 * Asks this I/O thread to remove a closed connection from its table.
+		 * The removal is always deferred, as a connection may be closed while
+		 * a message is being broadcast to its table.
+		 * 
+		 * @param connection
+		 *            the closed connection
+		 */
+		public void requestRemoval(NioConnection connection) {
+			closedConnections.add(connection);
+			selector.wakeup();
+		}
+
+		// implementation of method from the Runnable interface
+		public void run() {
+			while (true) {
+				try {
+					selector.select();
+				} catch (IOException ex) {
+					server.log.log(ServerLog.ERROR,
+							"Error in selecting ready channels");
+					if (!server.silentMode) ex.printStackTrace();
+					return;
+				}
+
+				SocketChannel channel;
+				while ((channel = newChannels.poll()) != null) {
+					NioConnection connection = new NioConnection(channel, this);
+					try {
+						connection.key = channel.register(selector,
+								SelectionKey.OP_READ, connection);
+					} catch (IOException ex) {
+						connection.close();
+						continue;
+					}
+					server.addConnection(connection);
+				}
+
+				NioConnection connection;
+				while ((connection = writeRequests.poll()) != null) {
+					connection.flush();
+				}
+				while ((connection = closedConnections.poll()) != null) {
+					server.removeConnection(connection.getTable(), connection);
+				}
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					connection = (NioConnection) key.attachment();
+					try {
+						if (key.isValid() && key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.flush();
+						}
+					} catch (CancelledKeyException ex) {
+						// closed by another thread meanwhile
+					}
+				}
+			}
+		} // run
+	} // Worker
+
+	/**
+	 * This inner class is used to model a connection served by an I/O thread,
+	 * with its own read buffer. Its queue of frames to be written is drained by
+	 * the I/O thread.
+	 */
+	private class NioConnection extends ClientConnection {
+		private final SocketChannel channel;
+		private final Worker worker;
+		private SelectionKey key;
+		// bytes read but not parsed yet, kept in write mode between reads
+		private ByteBuffer readBuffer = ByteBuffer
+				.allocate(MessageFrame.READ_BUFFER_SIZE);
+		// frames taken from the queue but not fully written yet
+		private ByteBuffer[] pending = null;
+		private boolean closed = false;
+		private final String remoteAddress;
+
+		/**
+		 * Creates and returns an instance of the NioConnection class.
+		 * 
+		 * @param channel
+		 *            the channel of the client
+		 * @param worker
+		 *            the I/O thread serving the client
+		 */
+		public NioConnection(SocketChannel channel, Worker worker) {
+			super(NioTransport.this.server);
+			this.channel = channel;
+			this.worker = worker;
+			this.remoteAddress = String.valueOf(channel.socket()
+					.getRemoteSocketAddress());
+		}
+
+		protected void scheduleWrite() {
+			worker.requestWrite(this);
+		}
+
+		/**
+		 * Writes the queued frames with gathering writes as long as the
+		 * channel takes them without blocking, and waits for the channel to
+		 * become writable if any are left. Only called by the I/O thread.
+		 */
+		void flush() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+			}
+			try {
+				while (pending != null || (pending = takeFrames()) != null) {
+					channel.write(pending);
+					if (pending[pending.length - 1].hasRemaining()) {
+						// the socket buffer is full; resumes when writable
+						setInterestOps(SelectionKey.OP_READ
+								| SelectionKey.OP_WRITE);
+						return;
+					}
+					pending = null;
+				}
+				setInterestOps(SelectionKey.OP_READ);
+			} catch (IOException ex) {
+				close();
+				return;
+			} catch (CancelledKeyException ex) {
+				// closed by another thread meanwhile
+				return;
+			}
+			// closes the channel after the last message, e.g. FULL
+			if (isClosing()) {
+				close();
+			}
+		} // flush
+
+		/**
+		 * Sets the operations the selector waits for, unless the connection
+		 * has been closed, possibly by another thread, which cancels the key.
+		 */
+		private void setInterestOps(int ops) {
+			if (key.isValid()) {
+				key.interestOps(ops);
+			}
+		}
+
+		/**
+		 * Reads what the channel has and parses every complete frame. Only
+		 * called by the I/O thread.
+		 */
+		void read() {
+			try {
+				if (channel.read(readBuffer) < 0) {
+					throw new IOException("Connection closed by the client");
+				}
+				readBuffer.flip();
+				while (readBuffer.remaining() >= MessageFrame.HEADER_SIZE) {
+					int start = readBuffer.position();
+					int payloadSize = readBuffer.getInt(start);
+					MessageFrame.checkPayloadSize(payloadSize);
+					int frameSize = MessageFrame.HEADER_SIZE + payloadSize;
+					if (readBuffer.remaining() < frameSize) {
+						if (readBuffer.capacity() < frameSize) {
+							// grows the buffer to hold the whole frame
+							ByteBuffer larger = ByteBuffer.allocate(frameSize);
+							larger.put(readBuffer);
+							readBuffer = larger;
+							return;
+						}
+						break;
+					}
+					CardGameMessage message = server.codec.decode(ByteBuffer
+							.wrap(readBuffer.array(), start
+									+ MessageFrame.HEADER_SIZE, payloadSize));
+					readBuffer.position(start + frameSize);
+					if (server.log.isLoggable(ServerLog.DEBUG)) {
+						server.log.log(ServerLog.DEBUG, "Message received from "
+								+ remoteAddress);
+					}
+					server.parseMessage(getTable(), this, message);
+				}
+				if (readBuffer.hasRemaining()
+						|| readBuffer.capacity() == MessageFrame.READ_BUFFER_SIZE) {
+					readBuffer.compact();
+				} else {
+					// drops the buffer grown for a large frame once it is parsed
+					readBuffer = ByteBuffer.allocate(MessageFrame.READ_BUFFER_SIZE);
+				}
+			} catch (Exception ex) {
+				server.log.log(ServerLog.WARNING,
+						"Error in receiving messages from the client at "
+								+ remoteAddress);
+				if (!server.silentMode) ex.printStackTrace();
+				// possible connection loss, closes and removes the connection
+				close();
+			}
+		} // read
+
+		public void close() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+			}
+			closeOutbound();
+			if (key != null) {
+				key.cancel();
+			}
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				if (!server.silentMode) ex.printStackTrace();
+			}
+			worker.requestRemoval(this);
+		}
+
+		public String getRemoteSocketAddress() {
+			return remoteAddress;
+		}
+	} // NioConnection
+}
@@ -18,22 +18,12 @@ public class Pair extends Hand {
      * @return true if hand is valid false otherwise
      */
     public boolean isValid() {
-        // number of cards
-        if (this.size() != 2)
-            return false;
-        
-        // same rank of cards
-        int card0 = this.getCard(0).getRank();
-        for (int i = 1; i < this.size(); ++i) {
-            if (this.getCard(i).getRank() != card0)
-                return false;
-        }
-        return true;
+        return HandMask.isPair(getMask());
     }
     
     /**
-     * Return the type of hand as a String
+     * Return the type of hand
      * @return type of hand
      */
-    public String getType() { return "Pair"; }
+    public HandType getHandType() { return HandType.PAIR; }
 }
\ No newline at end of file
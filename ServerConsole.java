@@ -0,0 +1,173 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+
+/**
+ * This class is used to model the Swing console of a card game server, which
+ * shows the last lines of its log. It is the only part of the server using
+ * AWT or Swing, so that a server without a console never loads them.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class ServerConsole {
+	/**
+	 * The number of lines the console keeps unless specified
+	 */
+	public static final int DEFAULT_MAX_LINES = 1000;
+
+	// the title of the console
+	private final String title;
+	// the number of lines the console keeps
+	private final int maxLines;
+	// the main frame of the server
+	private JFrame frame = null;
+	// text area for displaying server states
+	private JTextArea textArea = null;
+	// text waiting for the event dispatch thread to add it to the text area
+	private final StringBuilder pendingText = new StringBuilder();
+	// a boolean indicating if the event dispatch thread has been asked to
+	// update the text area
+	private boolean updateScheduled = false;
+
+	/**
+	 * Creates and returns an instance of the ServerConsole class, and shows it
+	 * on the event dispatch thread.
+	 *
+	 * @param title
+	 *            the title of the console, i.e. the name of the server
+	 * @param maxLines
+	 *            the number of lines the console keeps
+	 */
+	public ServerConsole(String title, int maxLines) {
+		this.title = title;
+		this.maxLines = maxLines;
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				buildGUI();
+			}
+		});
+	}
+
+	/**
+	 * Builds the GUI for the server
+	 */
+	private void buildGUI() {
+		// build a GUI
+		frame = new JFrame(title);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		textArea = new JTextArea(20, 40);
+		textArea.setEditable(false);
+		textArea.setLineWrap(true);
+		textArea.setWrapStyleWord(true);
+		JScrollPane scroller = new JScrollPane(textArea);
+		scroller.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+		scroller.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+		frame.add(scroller);
+
+		// build the menu bar
+		JMenuItem clearMenuItem = new JMenuItem("Clear console");
+		clearMenuItem.addActionListener(new ClearMenuItemListener());
+		JMenuItem quitMenuItem = new JMenuItem("Quit");
+		quitMenuItem.addActionListener(new QuitMenuItemListener());
+		JMenu menu = new JMenu("Option");
+		menu.add(clearMenuItem);
+		menu.add(quitMenuItem);
+		JMenuBar menuBar = new JMenuBar();
+		menuBar.add(menu);
+		frame.setJMenuBar(menuBar);
+
+		frame.pack();
+		frame.setVisible(true);
+		update();
+	} // buildGUI
+
+	/**
+	 * Shows the specified lines at the end of the console. Called by the
+	 * thread of the log; the lines are added on the event dispatch thread,
+	 * together with all lines shown since its last update.
+	 *
+	 * @param text
+	 *            the lines to be shown, each ending with a newline
+	 */
+	public void show(CharSequence text) {
+		synchronized (pendingText) {
+			pendingText.append(text);
+			// keeps about what the console shows if the EDT falls behind
+			int maxLength = maxLines * 160;
+			if (pendingText.length() > 2 * maxLength) {
+				pendingText.delete(0, pendingText.length() - maxLength);
+			}
+			if (updateScheduled) {
+				return;
+			}
+			updateScheduled = true;
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				update();
+			}
+		});
+	}
+
+	/**
+	 * Adds the pending lines to the text area and removes its oldest lines.
+	 * Only called on the event dispatch thread.
+	 */
+	private void update() {
+		if (textArea == null) {
+			// shown once the GUI is built
+			return;
+		}
+		String text;
+		synchronized (pendingText) {
+			text = pendingText.toString();
+			pendingText.setLength(0);
+			updateScheduled = false;
+		}
+		textArea.append(text);
+		int excess = textArea.getLineCount() - 1 - maxLines;
+		if (excess > 0) {
+			try {
+				textArea.replaceRange(null, 0, textArea.getLineStartOffset(excess));
+			} catch (BadLocationException ex) {
+				textArea.setText("");
+			}
+		}
+		textArea.setCaretPosition(textArea.getDocument().getLength());
+	} // update
+
+	/**
+	 * This inner class is used for handling the Clear menu
+	 *
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class ClearMenuItemListener implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			textArea.setText("");
+		}
+	} // ClearMenuItemListener
+
+	/**
+	 * This inner class is used for handling the Quit menu
+	 *
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class QuitMenuItemListener implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			frame.dispose();
+			System.exit(0);
+		}
+	} // QuitMenuItemListener
+}
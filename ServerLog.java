@@ -0,0 +1,362 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is used to model the log of a card game server. Logging only puts
+ * the message into a ring buffer of fixed size and returns; a thread of the log
+ * takes the messages from there in batches and shows them on the console of
+ * the server, if it has one, and optionally writes them to the standard output
+ * and to a rolling log file. If messages come faster than they can be written,
+ * the oldest ones not yet written are overwritten and counted, so that logging
+ * never blocks the server and its memory stays flat.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class ServerLog implements Runnable {
+	/**
+	 * The level of the details of every message received and sent
+	 */
+	public static final int DEBUG = 0;
+	/**
+	 * The level of the events of the server and its games
+	 */
+	public static final int INFO = 1;
+	/**
+	 * The level of the errors of single clients
+	 */
+	public static final int WARNING = 2;
+	/**
+	 * The level of the errors of the server itself
+	 */
+	public static final int ERROR = 3;
+	/**
+	 * The number of messages the ring buffer holds unless specified
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+	// names of the levels, as written to the log file
+	private static final String[] LEVEL_NAMES = { "DEBUG", "INFO", "WARNING",
+			"ERROR" };
+
+	// the ring buffer of the messages not written yet
+	private final String[] messages;
+	private final int[] levels;
+	private final long[] times;
+	// index of the oldest message in the ring buffer
+	private int head = 0;
+	// number of messages in the ring buffer
+	private int size = 0;
+	// number of messages overwritten before they were written
+	private long numOfDropped = 0;
+	// a boolean indicating if the thread of the log waits for messages
+	private boolean waiting = false;
+	// lock guarding the ring buffer, held only to put or take messages
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	// the lowest level of the messages logged
+	private volatile int level = INFO;
+
+	// the console of the server, or null if it has none
+	private volatile ServerConsole console = null;
+	// a boolean indicating if messages are also printed to the standard output
+	private volatile boolean printing = false;
+
+	// the log file, or null if there is none; only used by the thread of the
+	// log, except when the file is changed
+	private File file = null;
+	private Writer fileWriter = null;
+	// number of bytes written to the current log file
+	private long fileSize = 0;
+	// the size at which the log file is rolled over
+	private long maxFileSize = 0;
+	// the number of old log files kept
+	private int numOfOldFiles = 0;
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat(
+			"yyyy-MM-dd HH:mm:ss.SSS");
+
+	/**
+	 * Creates and returns an instance of the ServerLog class holding up to
+	 * DEFAULT_CAPACITY messages not written yet, and starts its thread.
+	 */
+	public ServerLog() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates and returns an instance of the ServerLog class, and starts its
+	 * thread.
+	 *
+	 * @param capacity
+	 *            the number of messages not written yet that the log holds
+	 */
+	public ServerLog(int capacity) {
+		messages = new String[capacity];
+		levels = new int[capacity];
+		times = new long[capacity];
+		Thread thread = new Thread(this, "CardGameServer-log");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Sets the lowest level of the messages logged.
+	 *
+	 * @param level
+	 *            DEBUG, INFO, WARNING or ERROR
+	 */
+	public void setLevel(int level) {
+		if (level < DEBUG || level > ERROR) {
+			throw new IllegalArgumentException("Unknown log level: " + level);
+		}
+		this.level = level;
+	}
+
+	/**
+	 * Returns the level named by the specified string.
+	 *
+	 * @param name
+	 *            "debug", "info", "warning" or "error", in any case
+	 * @return the level of the specified name
+	 */
+	public static int parseLevel(String name) {
+		for (int i = 0; i < LEVEL_NAMES.length; i++) {
+			if (LEVEL_NAMES[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unknown log level: " + name);
+	}
+
+	/**
+	 * Returns true if messages of the specified level are logged. Checks it
+	 * before building a costly message.
+	 *
+	 * @param level
+	 *            the level of a message
+	 * @return true if messages of this level are logged
+	 */
+	public boolean isLoggable(int level) {
+		return level >= this.level;
+	}
+
+	/**
+	 * Sets the console showing the log.
+	 *
+	 * @param console
+	 *            the console, or null for none
+	 */
+	public void setConsole(ServerConsole console) {
+		this.console = console;
+	}
+
+	/**
+	 * Sets if messages are also printed to the standard output, e.g. when the
+	 * server has no console.
+	 *
+	 * @param printing
+	 *            true to print messages to the standard output
+	 */
+	public void setPrinting(boolean printing) {
+		this.printing = printing;
+	}
+
+	/**
+	 * Writes the log to the specified file as well, rolling it over to
+	 * file.1, file.2, ... when it reaches the specified size.
+	 *
+	 * @param path
+	 *            the path of the log file
+	 * @param maxFileSize
+	 *            the size in bytes at which the log file is rolled over
+	 * @param numOfOldFiles
+	 *            the number of old log files kept
+	 * @throws IOException
+	 *             if the log file cannot be opened
+	 */
+	public synchronized void setFile(String path, long maxFileSize,
+			int numOfOldFiles) throws IOException {
+		closeFile();
+		this.file = new File(path);
+		this.maxFileSize = maxFileSize;
+		this.numOfOldFiles = numOfOldFiles;
+		openFile();
+	}
+
+	/**
+	 * Returns the number of messages overwritten before they were written.
+	 *
+	 * @return the number of messages dropped
+	 */
+	public long getNumOfDropped() {
+		lock.lock();
+		try {
+			return numOfDropped;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Logs the specified message if its level is logged. Never blocks on the
+	 * console or the log file.
+	 *
+	 * @param level
+	 *            the level of the message
+	 * @param msg
+	 *            the message to be logged
+	 */
+	public void log(int level, String msg) {
+		if (level < this.level) {
+			return;
+		}
+		long time = System.currentTimeMillis();
+		lock.lock();
+		try {
+			int tail;
+			if (size == messages.length) {
+				// overwrites the oldest message
+				tail = head;
+				head = (head + 1) % messages.length;
+				numOfDropped++;
+			} else {
+				tail = (head + size) % messages.length;
+				size++;
+			}
+			messages[tail] = msg;
+			levels[tail] = level;
+			times[tail] = time;
+			if (waiting) {
+				waiting = false;
+				notEmpty.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	} // log
+
+	// implementation of method from the Runnable interface
+	public void run() {
+		String[] batch = new String[messages.length];
+		int[] batchLevels = new int[messages.length];
+		long[] batchTimes = new long[messages.length];
+		long reportedDropped = 0;
+		while (true) {
+			int n;
+			long dropped;
+			lock.lock();
+			try {
+				while (size == 0) {
+					waiting = true;
+					notEmpty.awaitUninterruptibly();
+				}
+				// takes every message logged so far
+				n = size;
+				for (int i = 0; i < n; i++) {
+					int j = (head + i) % messages.length;
+					batch[i] = messages[j];
+					batchLevels[i] = levels[j];
+					batchTimes[i] = times[j];
+					messages[j] = null;
+				}
+				head = (head + n) % messages.length;
+				size = 0;
+				dropped = numOfDropped;
+			} finally {
+				lock.unlock();
+			}
+
+			StringBuilder text = new StringBuilder();
+			if (dropped > reportedDropped) {
+				text.append("(" + (dropped - reportedDropped)
+						+ " log messages dropped)\n");
+				reportedDropped = dropped;
+			}
+			for (int i = 0; i < n; i++) {
+				text.append(batch[i]).append('\n');
+			}
+			if (printing) {
+				System.out.print(text);
+			}
+			ServerConsole console = this.console;
+			if (console != null) {
+				console.show(text);
+			}
+			writeToFile(batch, batchLevels, batchTimes, n);
+			for (int i = 0; i < n; i++) {
+				batch[i] = null;
+			}
+		}
+	} // run
+
+	/**
+	 * Writes a batch of messages to the log file, if there is one.
+	 */
+	private synchronized void writeToFile(String[] batch, int[] batchLevels,
+			long[] batchTimes, int n) {
+		if (fileWriter == null) {
+			return;
+		}
+		try {
+			for (int i = 0; i < n; i++) {
+				String line = dateFormat.format(new Date(batchTimes[i])) + " "
+						+ LEVEL_NAMES[batchLevels[i]] + " " + batch[i] + "\n";
+				fileWriter.write(line);
+				fileSize += line.length();
+				if (fileSize >= maxFileSize) {
+					rollOver();
+				}
+			}
+			fileWriter.flush();
+		} catch (IOException ex) {
+			// stops writing to a file that fails
+			System.err.println("Error in writing to the log file " + file);
+			ex.printStackTrace();
+			closeFile();
+		}
+	} // writeToFile
+
+	/**
+	 * Renames the log file to file.1, keeping numOfOldFiles old files, and
+	 * starts a new log file.
+	 */
+	private void rollOver() throws IOException {
+		closeFile();
+		String path = file.getPath();
+		new File(path + "." + numOfOldFiles).delete();
+		for (int i = numOfOldFiles - 1; i >= 1; i--) {
+			new File(path + "." + i).renameTo(new File(path + "." + (i + 1)));
+		}
+		if (numOfOldFiles > 0) {
+			file.renameTo(new File(path + ".1"));
+		} else {
+			file.delete();
+		}
+		openFile();
+	}
+
+	private void openFile() throws IOException {
+		fileWriter = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		fileSize = file.length();
+	}
+
+	private void closeFile() {
+		if (fileWriter != null) {
+			try {
+				fileWriter.close();
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+			fileWriter = null;
+		}
+	}
+}
@@ -18,16 +18,12 @@ public class Single extends Hand {
      * @return true if hand is valid false otherwise
      */
     public boolean isValid() {
-        // number of cards
-        if (this.size() != 1)
-            return false;
-        
-        return true;
+        return HandMask.isSingle(getMask());
     }
 
     /**
-     * Return the type of hand as a String
+     * Return the type of hand
      * @return type of hand
      */
-    public String getType() { return "Single"; }
+    public HandType getHandType() { return HandType.SINGLE; }
 }
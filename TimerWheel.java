@@ -0,0 +1,191 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class is used to run many short tasks of a card game server after a
+ * delay from a single thread. The time is cut into ticks, and every timeout
+ * goes into the bucket of the tick it is due in, on a wheel of buckets that
+ * the thread turns once per tick, so that scheduling and cancelling take
+ * constant time however many timeouts are pending. A timeout due further than
+ * one turn ahead waits in its bucket for the turns left. Tasks run on the
+ * thread of the wheel, at most a tick late, and must not block.
+ *
+ * @author Darren Chang JR
+ *
+ */
+public class TimerWheel implements Runnable {
+	// the thread turning the wheel
+	private final Thread thread;
+	// the number of milliseconds of a tick
+	private final long tickMillis;
+	// the buckets of the wheel, each holding a list of its timeouts
+	private final Timeout[] buckets;
+	// the number of buckets less one, as the number of buckets is a power of 2
+	private final int mask;
+	// timeouts scheduled but not put into a bucket yet
+	private final ConcurrentLinkedQueue<Timeout> newTimeouts = new ConcurrentLinkedQueue<Timeout>();
+	// the time the wheel started turning, in milliseconds
+	private volatile long startTime;
+	// the number of ticks passed; only used by the thread of the wheel
+	private long tick = 0;
+
+	/**
+	 * Creates and returns an instance of the TimerWheel class, which does not
+	 * run tasks before it is started.
+	 *
+	 * @param name
+	 *            the name of the thread of the wheel
+	 * @param tickMillis
+	 *            the number of milliseconds of a tick
+	 * @param numOfBuckets
+	 *            the number of buckets of the wheel, rounded up to a power of
+	 *            2
+	 */
+	public TimerWheel(String name, long tickMillis, int numOfBuckets) {
+		if (tickMillis < 1 || numOfBuckets < 1) {
+			throw new IllegalArgumentException("Invalid tick or buckets: "
+					+ tickMillis + ", " + numOfBuckets);
+		}
+		this.tickMillis = tickMillis;
+		int size = Integer.highestOneBit(numOfBuckets);
+		if (size < numOfBuckets) {
+			size <<= 1;
+		}
+		buckets = new Timeout[size];
+		mask = size - 1;
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts turning the wheel. Does nothing if it is turning already.
+	 */
+	public synchronized void start() {
+		if (thread.getState() == Thread.State.NEW) {
+			startTime = System.currentTimeMillis();
+			thread.start();
+		}
+	}
+
+	/**
+	 * Runs a task once after the specified delay.
+	 *
+	 * @param task
+	 *            the task to be run on the thread of the wheel
+	 * @param delay
+	 *            the number of milliseconds before the task runs
+	 * @return the timeout of the task, with which it can be cancelled
+	 */
+	public Timeout schedule(Runnable task, long delay) {
+		Timeout timeout = new Timeout(task, System.currentTimeMillis()
+				+ Math.max(delay, 0));
+		newTimeouts.add(timeout);
+		return timeout;
+	}
+
+	// implementation of method from the Runnable interface
+	public void run() {
+		while (true) {
+			// sleeps until the end of the current tick
+			long endOfTick = startTime + (tick + 1) * tickMillis;
+			long now;
+			while ((now = System.currentTimeMillis()) < endOfTick) {
+				try {
+					Thread.sleep(endOfTick - now);
+				} catch (InterruptedException ex) {
+					return;
+				}
+			}
+
+			Timeout timeout;
+			while ((timeout = newTimeouts.poll()) != null) {
+				if (!timeout.cancelled) {
+					add(timeout);
+				}
+			}
+			expire((int) (tick & mask));
+			tick++;
+		}
+	} // run
+
+	/**
+	 * Puts a timeout into the bucket of the tick it is due in, or of the
+	 * current tick if it is overdue.
+	 */
+	private void add(Timeout timeout) {
+		long dueTick = Math.max((timeout.deadline - startTime) / tickMillis,
+				tick);
+		timeout.rounds = (dueTick - tick) / buckets.length;
+		int i = (int) (dueTick & mask);
+		timeout.next = buckets[i];
+		buckets[i] = timeout;
+	}
+
+	/**
+	 * Runs the due tasks of a bucket and takes them out of it, together with
+	 * the cancelled ones, counting down the turns left of the others.
+	 */
+	private void expire(int i) {
+		Timeout previous = null;
+		Timeout timeout = buckets[i];
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.cancelled || timeout.rounds <= 0) {
+				if (previous == null) {
+					buckets[i] = next;
+				} else {
+					previous.next = next;
+				}
+				timeout.next = null;
+				if (!timeout.cancelled) {
+					try {
+						timeout.task.run();
+					} catch (RuntimeException ex) {
+						// a failing task must not stop the others
+						ex.printStackTrace();
+					}
+				}
+			} else {
+				timeout.rounds--;
+				previous = timeout;
+			}
+			timeout = next;
+		}
+	} // expire
+
+	/**
+	 * This inner class is used to model a task scheduled on the wheel.
+	 */
+	public static class Timeout {
+		// the task to be run
+		private final Runnable task;
+		// the time the task is due, in milliseconds
+		private final long deadline;
+		// the number of turns of the wheel left before the task is due
+		private long rounds;
+		// the next timeout in the same bucket
+		private Timeout next;
+		// a boolean indicating if the task has been cancelled
+		private volatile boolean cancelled = false;
+
+		/**
+		 * Creates and returns an instance of the Timeout class.
+		 *
+		 * @param task
+		 *            the task to be run
+		 * @param deadline
+		 *            the time the task is due, in milliseconds
+		 */
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels the task, unless it has run already. A cancelled timeout
+		 * leaves its bucket when the wheel next passes it.
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+	} // Timeout
+}